@@ -73,6 +73,22 @@ public class Collection extends org.mmtk.vm.Collection {
     return Harness.collectors.getValue();
   }
 
+  /**
+   * The harness has no background sweeper: blocks are swept on demand
+   * by allocation, or at the start of the next collection.
+   */
+  @Override
+  public void scheduleBackgroundSweep() {
+  }
+
+  /**
+   * The harness has no background zeroing thread: pages are zeroed by
+   * allocation.
+   */
+  @Override
+  public void scheduleBackgroundZeroing() {
+  }
+
   /**
    * Fail with an out of memory error.
    */
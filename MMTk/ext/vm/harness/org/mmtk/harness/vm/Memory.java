@@ -140,6 +140,21 @@ public class Memory extends org.mmtk.vm.Memory {
     return SimulatedMemory.unprotect(start, size);
   }
 
+  /**
+   * Returns the physical memory behind an area of virtual memory to the
+   * operating system.  Simulated by zeroing the area, as MADV_DONTNEED
+   * does for private anonymous mappings.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public boolean uncommit(Address start, int size) {
+    SimulatedMemory.zero(start, Extent.fromIntZeroExtend(size));
+    return true;
+  }
+
   /**
    * Zero a region of memory.
    * @param start Start of address range (inclusive)
@@ -21,6 +21,7 @@ import java.util.Set;
 import org.mmtk.harness.lang.Trace;
 import org.mmtk.harness.lang.Trace.Item;
 import org.mmtk.harness.lang.runtime.ReferenceValue;
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
@@ -100,7 +101,8 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
   }
 
   /**
-   * Scan through the list of references.
+   * Scan through the list of references.  Called by every collector
+   * thread; the first to arrive does the work while the others wait.
    *
    * TODO support concurrent scans
    *
@@ -110,7 +112,15 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * @param nursery true if it is safe to only scan new references.
    */
   @Override
-  public synchronized void scan(TraceLocal trace, boolean nursery) {
+  public void scan(TraceLocal trace, boolean nursery) {
+    CollectorContext collector = org.mmtk.vm.VM.activePlan.collector();
+    if (collector.rendezvous() == 0) {
+      scanSerial(trace, nursery);
+    }
+    collector.rendezvous();
+  }
+
+  private synchronized void scanSerial(TraceLocal trace, boolean nursery) {
     Trace.trace(Item.REFERENCES, "Scanning %s references: current = %d, new = %d, %s",
         semantics,currentRefs.size(), newRefs.size(), nursery  ? "nursery" : "full-heap");
     if (!nursery) {
@@ -137,17 +147,22 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
 
   /**
    * Iterate over all references and forward.  Only relevant to collectors like
-   * MarkCompact.
+   * MarkCompact.  Called by every collector thread; the first to arrive does
+   * the work while the others wait.
    * @param trace The MMTk trace to forward to
    * @param nursery The nursery collection hint
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    Trace.trace(Item.REFERENCES, "Forwarding %s references: %s",
-        semantics,nursery ? "nursery" : "full-heap");
-    for (ReferenceValue value : oldRefs) {
-      value.forwardReference(trace);
+    CollectorContext collector = org.mmtk.vm.VM.activePlan.collector();
+    if (collector.rendezvous() == 0) {
+      Trace.trace(Item.REFERENCES, "Forwarding %s references: %s",
+          semantics,nursery ? "nursery" : "full-heap");
+      for (ReferenceValue value : oldRefs) {
+        value.forwardReference(trace);
+      }
     }
+    collector.rendezvous();
   }
 
   /**
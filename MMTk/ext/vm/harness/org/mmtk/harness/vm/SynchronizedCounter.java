@@ -21,7 +21,7 @@ import org.vmmagic.pragma.Uninterruptible;
 public class SynchronizedCounter extends org.mmtk.vm.SynchronizedCounter {
 
   /** The current value of the counter */
-  private int value;
+  private volatile int value;
 
   /**
    * Reset the counter to 0, returning its previous value.
@@ -43,6 +43,15 @@ public class SynchronizedCounter extends org.mmtk.vm.SynchronizedCounter {
     return value++;
   }
 
+  /**
+   * Subtracts 1 from the counter.
+   *
+   * @return the value before the subtraction
+   */
+  public synchronized int decrement() {
+    return value--;
+  }
+
   /**
    * Peek at the counter
    *
@@ -14,6 +14,7 @@ package org.jikesrvm.mm.mmtk;
 
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.MutatorContext;
+import org.mmtk.utility.options.Options;
 
 import org.jikesrvm.ArchitectureSpecific;
 import org.jikesrvm.VM;
@@ -22,6 +23,8 @@ import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.mm.mminterface.CollectorThread;
 import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.scheduler.FinalizerThread;
+import org.jikesrvm.scheduler.SweeperThread;
+import org.jikesrvm.scheduler.ZeroingThread;
 import org.vmmagic.pragma.Interruptible;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.pragma.UninterruptibleNoWarn;
@@ -124,6 +127,7 @@ public class Collection extends org.mmtk.vm.Collection implements org.mmtk.utili
   @Unpreemptible
   public void stopAllMutators() {
     RVMThread.blockAllMutatorsForGC();
+    if (Options.verbose.getValue() >= 3) RVMThread.reportLastSafepoint();
   }
 
   /**
@@ -181,5 +185,25 @@ public class Collection extends org.mmtk.vm.Collection implements org.mmtk.utili
       FinalizerThread.schedule();
     }
   }
-}
 
+  /***********************************************************************
+   *
+   * Sweeping and zeroing
+   */
+
+  /**
+   * Wake the sweeper thread to sweep the blocks the collection has
+   * left unswept.
+   */
+  public void scheduleBackgroundSweep() {
+    SweeperThread.schedule();
+  }
+
+  /**
+   * Wake the zeroing thread to zero the pages released by the
+   * collection ahead of allocation.
+   */
+  public void scheduleBackgroundZeroing() {
+    ZeroingThread.schedule();
+  }
+}
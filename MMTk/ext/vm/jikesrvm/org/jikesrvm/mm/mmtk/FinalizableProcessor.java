@@ -19,11 +19,18 @@ import org.jikesrvm.SizeConstants;
 import org.jikesrvm.VM;
 import org.jikesrvm.mm.mminterface.Selected;
 import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.scheduler.RVMThread;
 import org.jikesrvm.Services;
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.TraceLocal;
 
 /**
- * This class manages the processing of finalizable objects.
+ * This class manages the processing of finalizable objects.<p>
+ *
+ * The candidate table is scanned and forwarded in parallel, each
+ * collector thread taking an equal slice.  Objects found ready for
+ * finalization are appended to the ready queue in bulk at the end of
+ * the scan, and handed out to the finalizer threads in batches.
  */
 // can this be a linked list?
 @Uninterruptible
@@ -70,6 +77,12 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
   /** Last object ready to be finalized */
   private volatile int lastReadyIndex = 0;
 
+  /** The number of live candidates in each collector's slice, by worker ordinal */
+  private final int[] survivors = new int[RVMThread.MAX_THREADS];
+
+  /** The start of the ready objects in each collector's slice, by worker ordinal */
+  private final int[] readyStart = new int[RVMThread.MAX_THREADS];
+
   /**
    * Create a new table.
    */
@@ -151,14 +164,18 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    *
    * Currently ignores the nursery hint.
    *
-   * TODO parallelise this code?
+   * Called by every collector thread, each of which forwards its own
+   * slice of the table.
    *
    * @param trace The trace
    * @param nursery Is this a nursery collection ?
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    for (int i=0 ; i < maxIndex; i++) {
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int ordinal = cc.parallelWorkerOrdinal();
+    final int end = sliceStart(0, maxIndex, ordinal + 1, cc.parallelWorkerCount());
+    for (int i = sliceStart(0, maxIndex, ordinal, cc.parallelWorkerCount()); i < end; i++) {
       ObjectReference ref = table.get(i).toObjectReference();
       table.set(i, trace.getForwardedFinalizable(ref).toAddress());
     }
@@ -172,16 +189,27 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    *
-   * TODO parallelise this code
+   * Called by every collector thread.  Each thread scans its own slice
+   * of the table, packing the live candidates at the start of the slice
+   * and the objects ready for finalization at its end.  Once all threads
+   * are done, the first to arrive appends the ready objects to the ready
+   * queue in one go and slides the live candidates together.
    *
    * @param nursery Scan only the newly created references
    */
   @Override
   @UninterruptibleNoWarn
   public void scan(TraceLocal trace, boolean nursery) {
-    int toIndex = nursery ? nurseryIndex : 0;
-
-    for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int ordinal = cc.parallelWorkerOrdinal();
+    final int workers = cc.parallelWorkerCount();
+    final int start = nursery ? nurseryIndex : 0;
+    final int end = maxIndex;
+    final int sliceStart = sliceStart(start, end, ordinal, workers);
+    int toIndex = sliceStart;
+    int readyIndex = sliceStart(start, end, ordinal + 1, workers);
+
+    for (int fromIndex = toIndex; fromIndex < readyIndex; fromIndex++) {
       ObjectReference ref = table.get(fromIndex).toObjectReference();
 
       /* Determine liveness (and forward if necessary) */
@@ -190,18 +218,86 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
         continue;
       }
 
-      /* Make ready for finalize */
+      /* Make ready for finalize, swapping it with the last unscanned entry */
       ref = trace.retainForFinalize(ref);
+      readyIndex--;
+      table.set(fromIndex--, table.get(readyIndex));
+      table.set(readyIndex, ref.toAddress());
+    }
+    survivors[ordinal] = toIndex - sliceStart;
+    readyStart[ordinal] = readyIndex;
 
-      /* Add to object table */
-      Offset offset = Word.fromIntZeroExtend(lastReadyIndex).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
-      Selected.Plan.get().storeObjectReference(Magic.objectAsAddress(readyForFinalize).plus(offset), ref);
-      lastReadyIndex = (lastReadyIndex + 1) % readyForFinalize.length;
+    if (cc.rendezvous() == 0) {
+      /* The ready objects first, as sliding the live ones overwrites them */
+      for (int w = 0; w < workers; w++) {
+        addReady(readyStart[w], sliceStart(start, end, w + 1, workers));
+      }
+      nurseryIndex = maxIndex = compact(start, end, workers);
+
+      /* Possible schedule finalizers to run */
+      Collection.scheduleFinalizerThread();
+    }
+    /* No thread may leave until the table is consistent again */
+    cc.rendezvous();
+  }
+
+  /**
+   * Append a run of the table to the ready queue.  There is always room,
+   * as <code>add</code> keeps the free part of the ready queue at least
+   * as large as the table.
+   *
+   * @param from The first entry of the run
+   * @param to The end of the run
+   */
+  private void addReady(int from, int to) {
+    final Address ready = Magic.objectAsAddress(readyForFinalize);
+    final int length = readyForFinalize.length;
+    int last = lastReadyIndex;
+    for (int i = from; i < to; i++) {
+      Offset offset = Word.fromIntZeroExtend(last).lsh(LOG_BYTES_IN_ADDRESS).toOffset();
+      Selected.Plan.get().storeObjectReference(ready.plus(offset), table.get(i).toObjectReference());
+      last = (last + 1) % length;
     }
-    nurseryIndex = maxIndex = toIndex;
+    lastReadyIndex = last;
+  }
 
-    /* Possible schedule finalizers to run */
-    Collection.scheduleFinalizerThread();
+  /**
+   * Slide the live candidates of each slice of the table down to follow
+   * those of the slice before it.
+   *
+   * @param start The start of the scanned part of the table
+   * @param end The end of the scanned part of the table
+   * @param workers The number of slices
+   * @return The new end of the table
+   */
+  private int compact(int start, int end, int workers) {
+    int toIndex = start + survivors[0];
+    for (int w = 1; w < workers; w++) {
+      int fromIndex = sliceStart(start, end, w, workers);
+      int fromEnd = fromIndex + survivors[w];
+      if (fromIndex == toIndex) {
+        toIndex = fromEnd;
+      } else {
+        while (fromIndex < fromEnd) {
+          table.set(toIndex++, table.get(fromIndex++));
+        }
+      }
+    }
+    return toIndex;
+  }
+
+  /**
+   * Divide part of the table into equal slices, one per collector.
+   *
+   * @param start The start of the part to divide
+   * @param end The end of the part to divide
+   * @param ordinal The ordinal of the collector
+   * @param workers The number of collectors
+   * @return The start of the collector's slice
+   */
+  @Inline
+  private static int sliceStart(int start, int end, int ordinal, int workers) {
+    return start + (int)(((long)(end - start) * ordinal) / workers);
   }
 
   /**
@@ -223,6 +319,26 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
     return result;
   }
 
+  /**
+   * Get a batch of objects to run finalize(), taking the lock once.
+   *
+   * @param batch Receives the objects
+   * @return The number of objects stored in <code>batch</code>
+   */
+  @NoInline
+  @Unpreemptible("Non-preemptible but may pause if another thread is growing the table")
+  public int getReady(Object[] batch) {
+    lock.acquire();
+    int count = 0;
+    while (count < batch.length && nextReadyIndex != lastReadyIndex) {
+      Services.setArrayUninterruptible(batch, count++, readyForFinalize[nextReadyIndex]);
+      Services.setArrayUninterruptible(readyForFinalize, nextReadyIndex, null);
+      nextReadyIndex = (nextReadyIndex + 1) % readyForFinalize.length;
+    }
+    lock.release();
+    return count;
+  }
+
   /***********************************************************************
    * Statistics and debugging
    */
@@ -274,6 +390,17 @@ public final class FinalizableProcessor extends org.mmtk.vm.FinalizableProcessor
     return finalizableProcessor.getReady();
   }
 
+  /**
+   * Get a batch of objects to call the finalize() method on them.
+   *
+   * @param batch Receives the objects
+   * @return The number of objects stored in <code>batch</code>
+   */
+  @Unpreemptible("Non-preemptible but may pause if table is being grown")
+  public static int getForFinalize(Object[] batch) {
+    return finalizableProcessor.getReady(batch);
+  }
+
   /**
    * The number of objects waiting for finalize() calls.
    */
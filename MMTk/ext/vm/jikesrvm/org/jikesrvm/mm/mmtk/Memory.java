@@ -142,6 +142,20 @@ import org.vmmagic.pragma.*;
                                                    org.jikesrvm.runtime.Memory.PROT_EXEC);
   }
 
+  /**
+   * Returns the physical memory behind an area of virtual memory to the
+   * operating system.  The area stays mapped, and its contents are
+   * undefined until it is next written.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public final boolean uncommit(Address start, int size) {
+    return org.jikesrvm.runtime.Memory.uncommit(start, Extent.fromIntZeroExtend(size));
+  }
+
   /**
    * Zero a region of memory.
    * @param start Start of address range (inclusive)
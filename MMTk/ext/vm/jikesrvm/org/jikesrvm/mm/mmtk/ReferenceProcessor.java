@@ -12,6 +12,7 @@
  */
 package org.jikesrvm.mm.mmtk;
 
+import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.Plan;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.utility.options.Options;
@@ -47,6 +48,10 @@ import java.lang.ref.PhantomReference;
  *
  * As an optimization for generational collectors, each reference type
  * maintains two queues: a nursery queue and the main queue.
+ *
+ * The table is scanned and forwarded in parallel: each collector thread
+ * takes an equal slice and compacts the survivors to the start of its
+ * slice, then the slices are slid together.
  */
 @Uninterruptible
 public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
@@ -114,6 +119,12 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    */
   private volatile boolean growingTable = false;
 
+  /**
+   * The number of surviving references in each collector's slice of the
+   * table, indexed by worker ordinal
+   */
+  private final int[] survivors = new int[RVMThread.MAX_THREADS];
+
   /**
    * Semantics
    */
@@ -270,31 +281,39 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    *
    * Currently ignores the nursery hint.
    *
-   * TODO parallelise this code
+   * Called by every collector thread, each of which forwards its own
+   * slice of the table.
    *
    * @param trace The trace
    * @param nursery Is this a nursery collection ?
    */
   @Override
   public void forward(TraceLocal trace, boolean nursery) {
-    if (VM.VerifyAssertions) VM._assert(unforwardedReferences != null);
+    final AddressArray table = unforwardedReferences;
+    if (VM.VerifyAssertions) VM._assert(table != null);
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.forward(",semanticsStr,")");
     if (TRACE_DETAIL) {
       VM.sysWrite(semanticsStr," Reference table is ",
           Magic.objectAsAddress(references));
       VM.sysWriteln("unforwardedReferences is ",
-          Magic.objectAsAddress(unforwardedReferences));
+          Magic.objectAsAddress(table));
     }
-    for (int i=0; i < maxIndex; i++) {
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int ordinal = cc.parallelWorkerOrdinal();
+    final int end = sliceStart(0, maxIndex, ordinal + 1, cc.parallelWorkerCount());
+    for (int i = sliceStart(0, maxIndex, ordinal, cc.parallelWorkerCount()); i < end; i++) {
       if (TRACE_DETAIL) VM.sysWrite("slot ",i,": ");
-      ObjectReference reference = unforwardedReferences.get(i).toObjectReference();
+      ObjectReference reference = table.get(i).toObjectReference();
       if (TRACE_DETAIL) VM.sysWriteln("forwarding ",reference);
       setReferent(reference, trace.getForwardedReferent(getReferent(reference)));
       ObjectReference newReference = trace.getForwardedReference(reference);
-      unforwardedReferences.set(i, newReference.toAddress());
+      table.set(i, newReference.toAddress());
     }
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.forward(",semanticsStr,")");
-    unforwardedReferences = null;
+    /* Every thread has read the table once all have arrived */
+    if (cc.rendezvous() == 0) {
+      unforwardedReferences = null;
+    }
   }
 
   /**
@@ -314,7 +333,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
    * Depending on the value of <code>nursery</code>, we will either
    * scan all references, or just those created since the last scan.
    *
-   * TODO parallelise this code
+   * Called by every collector thread.  Each thread scans its own slice
+   * of the table, compacting the survivors to the start of the slice.
+   * Once all threads are done, the first to arrive slides the slices
+   * together, which copies only the survivors and touches no objects.
    *
    * @param nursery Scan only the newly created references
    */
@@ -323,10 +345,16 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
     unforwardedReferences = references;
 
     if (TRACE) VM.sysWriteln("Starting ReferenceGlue.scan(",semanticsStr,")");
-    int toIndex = nursery ? nurseryIndex : 0;
+    final CollectorContext cc = RVMThread.getCurrentThread().getCollectorContext();
+    final int ordinal = cc.parallelWorkerOrdinal();
+    final int workers = cc.parallelWorkerCount();
+    final int start = nursery ? nurseryIndex : 0;
+    final int end = maxIndex;
+    final int sliceEnd = sliceStart(start, end, ordinal + 1, workers);
+    int toIndex = sliceStart(start, end, ordinal, workers);
 
     if (TRACE_DETAIL) VM.sysWriteln(semanticsStr," Reference table is ",Magic.objectAsAddress(references));
-    for (int fromIndex = toIndex; fromIndex < maxIndex; fromIndex++) {
+    for (int fromIndex = toIndex; fromIndex < sliceEnd; fromIndex++) {
       ObjectReference reference = getReference(fromIndex);
 
       /* Determine liveness (and forward if necessary) the reference */
@@ -342,17 +370,63 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
         }
       }
     }
-    if (Options.verbose.getValue() >= 3) {
-      VM.sysWrite(semanticsStr);
-      VM.sysWriteln(" references: ",maxIndex," -> ",toIndex);
-    }
-    nurseryIndex = maxIndex = toIndex;
+    survivors[ordinal] = toIndex - sliceStart(start, end, ordinal, workers);
 
     /* flush out any remset entries generated during the above activities */
     Selected.Mutator.get().flushRememberedSets();
+
+    if (cc.rendezvous() == 0) {
+      toIndex = compact(start, end, workers);
+      if (Options.verbose.getValue() >= 3) {
+        VM.sysWrite(semanticsStr);
+        VM.sysWriteln(" references: ",end," -> ",toIndex);
+      }
+      nurseryIndex = maxIndex = toIndex;
+    }
+    /* No thread may leave until the table is consistent again */
+    cc.rendezvous();
     if (TRACE) VM.sysWriteln("Ending ReferenceGlue.scan(",semanticsStr,")");
   }
 
+  /**
+   * Slide the survivors of each slice of the table down to follow those
+   * of the slice before it.
+   *
+   * @param start The start of the scanned part of the table
+   * @param end The end of the scanned part of the table
+   * @param workers The number of slices
+   * @return The new end of the table
+   */
+  private int compact(int start, int end, int workers) {
+    int toIndex = start + survivors[0];
+    for (int w = 1; w < workers; w++) {
+      int fromIndex = sliceStart(start, end, w, workers);
+      int fromEnd = fromIndex + survivors[w];
+      if (fromIndex == toIndex) {
+        toIndex = fromEnd;
+      } else {
+        while (fromIndex < fromEnd) {
+          references.set(toIndex++, references.get(fromIndex++));
+        }
+      }
+    }
+    return toIndex;
+  }
+
+  /**
+   * Divide part of the table into equal slices, one per collector.
+   *
+   * @param start The start of the part to divide
+   * @param end The end of the part to divide
+   * @param ordinal The ordinal of the collector
+   * @param workers The number of collectors
+   * @return The start of the collector's slice
+   */
+  @Inline
+  private static int sliceStart(int start, int end, int ordinal, int workers) {
+    return start + (int)(((long)(end - start) * ordinal) / workers);
+  }
+
   /**
    * Put this Reference object on its ReferenceQueue (if it has one)
    * when its referent is no longer sufficiently reachable. The
@@ -520,7 +594,10 @@ public final class ReferenceProcessor extends org.mmtk.vm.ReferenceProcessor {
       else if (TRACE_UNREACHABLE) VM.sysWriteln(" UNREACHABLE referent:  ",oldReferent);
 
       clearReferent(newReference);
+      /* Reference queues are unsynchronized, and other collectors may be enqueueing */
+      lock.acquire();
       enqueueReference(newReference);
+      lock.release();
       return ObjectReference.nullReference();
     }
   }
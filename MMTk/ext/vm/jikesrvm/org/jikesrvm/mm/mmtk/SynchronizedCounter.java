@@ -53,6 +53,13 @@ public final class SynchronizedCounter extends org.mmtk.vm.SynchronizedCounter {
     return Synchronization.fetchAndAdd(this, offset, 1);
   }
 
+  // Returns the value before the subtraction
+  //
+  public int decrement() {
+    if (VM.VerifyAssertions) VM._assert(!offset.isMax());
+    return Synchronization.fetchAndAdd(this, offset, -1);
+  }
+
   public int peek() {
     return count;
   }
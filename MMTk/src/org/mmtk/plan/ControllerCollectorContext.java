@@ -12,8 +12,10 @@
  */
 package org.mmtk.plan;
 
+import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
 import org.mmtk.utility.heap.HeapGrowthManager;
+import org.mmtk.utility.heap.Map;
 import org.mmtk.utility.options.Options;
 import org.mmtk.vm.Monitor;
 import org.mmtk.vm.VM;
@@ -111,6 +113,14 @@ public class ControllerCollectorContext extends CollectorContext {
         HeapGrowthManager.reset();
       }
 
+      // Return the memory of long free chunks to the OS
+      if (Options.uncommitAfter.getValue() > 0) {
+        int uncommitted = Map.uncommitFreeChunks(Options.uncommitAfter.getValue());
+        if (Options.verbose.getValue() >= 3 && uncommitted > 0) {
+          Log.write("[Uncommitted "); Log.write(uncommitted >> Constants.LOG_BYTES_IN_KBYTE); Log.writeln("KB]");
+        }
+      }
+
       // Reset the triggering information.
       Plan.resetCollectionTrigger();
 
@@ -755,6 +755,16 @@ public abstract class Phase implements Constants {
     concurrentPhaseId = 0;
   }
 
+  /**
+   * Run any concurrent phase of the current collection atomically, as
+   * if the collection were due to resource exhaustion.  Called by the
+   * primary thread from a global phase, when the plan finds that this
+   * collection can not run alongside the mutators.
+   */
+  public static void disallowConcurrentPhase() {
+    allowConcurrentPhase = false;
+  }
+
   /**
    * @return True if there is an active concurrent phase.
    */
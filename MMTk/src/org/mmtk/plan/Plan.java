@@ -17,6 +17,7 @@ import org.mmtk.policy.Space;
 import org.mmtk.policy.ImmortalSpace;
 import org.mmtk.policy.RawPageSpace;
 import org.mmtk.policy.LargeObjectSpace;
+import org.mmtk.policy.SegregatedFreeListSpace;
 import org.mmtk.utility.alloc.LinearScan;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Conversions;
@@ -155,6 +156,7 @@ public abstract class Plan implements Constants {
     Options.verboseTiming = new VerboseTiming();
     Options.stressFactor = new StressFactor();
     Options.noFinalizer = new NoFinalizer();
+    Options.finalizerThreads = new FinalizerThreads();
     Options.noReferenceTypes = new NoReferenceTypes();
     Options.fullHeapSystemGC = new FullHeapSystemGC();
     Options.harnessAll = new HarnessAll();
@@ -162,10 +164,15 @@ public abstract class Plan implements Constants {
     Options.metaDataLimit = new MetaDataLimit();
     Options.nurserySize = new NurserySize();
     Options.variableSizeHeap = new VariableSizeHeap();
+    Options.heapSizing = new HeapSizing();
+    Options.maxPauseGoal = new MaxPauseGoal();
+    Options.gcTimeRatio = new GCTimeRatio();
     Options.eagerMmapSpaces = new EagerMmapSpaces();
+    Options.uncommitAfter = new UncommitAfter();
     Options.sanityCheck = new SanityCheck();
     Options.debugAddress = new DebugAddress();
     Options.perfEvents = new PerfEvents();
+    Options.prefetchTrace = new PrefetchTrace();
     Options.threads = new Threads();
     Map.finalizeStaticSpaceMap();
     registerSpecializedMethods();
@@ -828,6 +835,10 @@ public abstract class Plan implements Constants {
    * @return true if a collection is required.
    */
   public final boolean poll(boolean spaceFull, Space space) {
+    if (!spaceFull && space != metaDataSpace && getPagesReserved() > getTotalPages() &&
+        SegregatedFreeListSpace.completeDeferredSweeps()) {
+      logPoll(space, "Completed deferred sweep");
+    }
     if (collectionRequired(spaceFull, space)) {
       if (space == metaDataSpace) {
         /* In general we must not trigger a GC on metadata allocation since
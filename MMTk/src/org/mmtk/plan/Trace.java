@@ -34,7 +34,19 @@ public class Trace implements Constants {
    * Constructor
    */
   public Trace(RawPageSpace metaDataSpace) {
-    valuePool = new SharedDeque("valuePool",metaDataSpace, 1);
+    this(metaDataSpace, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param metaDataSpace The space from which the pools allocate buffers
+   * @param workStealing Should the collectors steal gray objects from
+   * each other?  Only suitable if every collector thread takes part in
+   * each closure over this trace, after {@link #prepare()}.
+   */
+  public Trace(RawPageSpace metaDataSpace, boolean workStealing) {
+    valuePool = new SharedDeque("valuePool",metaDataSpace, 1, workStealing);
     rootLocationPool = new SharedDeque("rootLocations", metaDataSpace, 1);
   }
 
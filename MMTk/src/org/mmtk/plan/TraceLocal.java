@@ -34,6 +34,14 @@ import org.vmmagic.unboxed.*;
  */
 @Uninterruptible
 public abstract class TraceLocal extends TransitiveClosure implements Constants {
+  /****************************************************************************
+   *
+   * Class variables
+   */
+  /** The number of gray objects prefetched ahead of the one being scanned */
+  private static final int PREFETCH_DISTANCE = 8;
+  private static final int PREFETCH_MASK = PREFETCH_DISTANCE - 1;
+
   /****************************************************************************
    *
    * Instance variables
@@ -42,6 +50,8 @@ public abstract class TraceLocal extends TransitiveClosure implements Constants
   protected final ObjectReferenceDeque values;
   /* delayed root slots */
   protected final AddressDeque rootLocations;
+  /* gray objects prefetched but not yet scanned */
+  private final ObjectReferenceArray prefetchQueue = ObjectReferenceArray.create(PREFETCH_DISTANCE);
 
   /****************************************************************************
    *
@@ -478,16 +488,51 @@ public abstract class TraceLocal extends TransitiveClosure implements Constants
     }
     logMessage(5, "processing gray objects");
     assertMutatorRemsetsFlushed();
+    boolean prefetch = Options.prefetchTrace.getValue();
     do {
-      while (!values.isEmpty()) {
-        ObjectReference v = values.pop();
-        scanObject(v);
+      if (prefetch) {
+        processValuesPrefetching();
+      } else {
+        while (!values.isEmpty()) {
+          ObjectReference v = values.pop();
+          scanObject(v);
+        }
       }
       processRememberedSets();
     } while (!values.isEmpty());
     assertMutatorRemsetsFlushed();
   }
 
+  /**
+   * Scan gray objects until there are none left, passing them through a
+   * small FIFO.  Each object is prefetched as it enters the FIFO and is
+   * scanned PREFETCH_DISTANCE objects later, which gives the prefetch
+   * of its header time to complete.  The FIFO is filled from the local buffer
+   * only, so a collector never waits for work while it holds objects in
+   * the FIFO.
+   */
+  private void processValuesPrefetching() {
+    int first = 0;
+    int count = 0;
+    while (true) {
+      while (count < PREFETCH_DISTANCE) {
+        ObjectReference v = values.popLocal();
+        if (v.isNull()) break;
+        VM.objectModel.objectStartRef(v).prefetch();
+        prefetchQueue.set((first + count) & PREFETCH_MASK, v);
+        count++;
+      }
+      if (count == 0) {
+        if (values.isEmpty()) return;
+        continue;
+      }
+      ObjectReference v = prefetchQueue.get(first);
+      first = (first + 1) & PREFETCH_MASK;
+      count--;
+      scanObject(v);
+    }
+  }
+
   /**
    * Process GC work until either complete or workLimit
    * units of work are completed.
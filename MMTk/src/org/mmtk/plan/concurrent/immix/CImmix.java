@@ -0,0 +1,166 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.Concurrent;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.ImmixSpace;
+import org.mmtk.policy.immix.ObjectHeader;
+import org.mmtk.utility.heap.VMRequest;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements the global state of a concurrent immix collector.<p>
+ *
+ * Marking runs concurrently with the mutators, kept safe by the snapshot
+ * barrier of {@link org.mmtk.plan.concurrent.ConcurrentMutator}.  Objects
+ * and lines are marked exactly as in {@link org.mmtk.plan.immix.Immix},
+ * and objects allocated while the trace runs are allocated marked.  Lines
+ * and blocks are swept in the final stop-the-world phase.<p>
+ *
+ * A concurrent trace never moves objects.  When a collection decides to
+ * defragment (an emergency or repeated collection, or defrag stress), its
+ * whole closure instead runs stop-the-world with the defragmenting trace.
+ */
+@Uninterruptible
+public class CImmix extends Concurrent {
+
+  /****************************************************************************
+   * Constants
+   */
+
+  /****************************************************************************
+   * Class variables
+   */
+
+  public static final ImmixSpace immixSpace = new ImmixSpace("immix", VMRequest.create());
+  public static final int IMMIX = immixSpace.getDescriptor();
+
+  public static final int SCAN_IMMIX = 0;
+  public static final int SCAN_DEFRAG = 1;
+
+  static {
+    immixSpace.makeAllocAsMarked();
+    smallCodeSpace.makeAllocAsMarked();
+    nonMovingSpace.makeAllocAsMarked();
+  }
+
+  /****************************************************************************
+   * Instance variables
+   */
+
+  public final Trace immixTrace = new Trace(metaDataSpace);
+  protected boolean lastGCWasDefrag = false;
+
+  /*****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Perform a (global) collection phase.
+   *
+   * @param phaseId Collection phase to execute.
+   */
+  @Inline
+  public void collectionPhase(short phaseId) {
+    if (phaseId == SET_COLLECTION_KIND) {
+      super.collectionPhase(phaseId);
+      immixSpace.decideWhetherToDefrag(emergencyCollection, true, collectionAttempt, userTriggeredCollection);
+      return;
+    }
+
+    if (phaseId == PREPARE) {
+      super.collectionPhase(phaseId);
+      immixTrace.prepareNonBlocking();
+      immixSpace.prepare(true);
+      /* Defragmentation moves objects, so it can not run concurrently */
+      if (immixSpace.inImmixDefragCollection())
+        Phase.disallowConcurrentPhase();
+      return;
+    }
+
+    if (phaseId == RELEASE) {
+      immixTrace.release();
+      lastGCWasDefrag = immixSpace.release(true);
+      super.collectionPhase(phaseId);
+      return;
+    }
+
+    super.collectionPhase(phaseId);
+  }
+
+  /**
+   * @return Whether last GC was an exhaustive attempt to collect the heap.  For many collectors this is the same as asking whether the last GC was a full heap collection.
+   */
+  @Override
+  public boolean lastCollectionWasExhaustive() {
+    return lastGCWasDefrag;
+  }
+
+  /*****************************************************************************
+   *
+   * Accounting
+   */
+
+  /**
+   * Return the number of pages reserved for use given the pending
+   * allocation.  The superclass accounts for its spaces, we just
+   * augment this with the immix space's contribution.
+   *
+   * @return The number of pages reserved given the pending
+   * allocation, excluding space reserved for copying.
+   */
+  public int getPagesUsed() {
+    return immixSpace.reservedPages() + super.getPagesUsed();
+  }
+
+  /**
+   * Return the number of pages reserved for collection.
+   *
+   * @return The number of pages reserved given the pending
+   * allocation, including space reserved for collection.
+   */
+  @Override
+  public int getCollectionReserve() {
+    return super.getCollectionReserve() + immixSpace.defragHeadroomPages();
+  }
+
+  /**
+   * @see org.mmtk.plan.Plan#willNeverMove
+   *
+   * @param object Object in question
+   * @return True if the object will never move
+   */
+  @Override
+  public boolean willNeverMove(ObjectReference object) {
+    if (Space.isInSpace(IMMIX, object)) {
+      ObjectHeader.pinObject(object);
+      return true;
+    }
+    return super.willNeverMove(object);
+  }
+
+  /**
+   * Register specialized methods.
+   */
+  @Interruptible
+  protected void registerSpecializedMethods() {
+    TransitiveClosure.registerSpecializedScan(SCAN_IMMIX, CImmixTraceLocal.class);
+    TransitiveClosure.registerSpecializedScan(SCAN_DEFRAG, CImmixDefragTraceLocal.class);
+    super.registerSpecializedMethods();
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import org.mmtk.plan.*;
+import org.mmtk.plan.concurrent.ConcurrentMutator;
+import org.mmtk.policy.Space;
+import org.mmtk.policy.immix.MutatorLocal;
+
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements <i>per-mutator thread</i> behavior
+ * and state for the <i>CImmix</i> plan, which implements a full-heap
+ * concurrent immix collector.<p>
+ *
+ * Specifically, this class defines <i>CImmix</i> mutator-time allocation
+ * and the snapshot barrier's handling of overwritten references.
+ *
+ * @see CImmix
+ * @see ConcurrentMutator
+ */
+@Uninterruptible
+public class CImmixMutator extends ConcurrentMutator {
+
+  /****************************************************************************
+   * Instance fields
+   */
+  protected final MutatorLocal immix;
+  private final TraceWriteBuffer remset;
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+
+  /**
+   * Constructor
+   */
+  public CImmixMutator() {
+    immix = new MutatorLocal(CImmix.immixSpace, false);
+    remset = new TraceWriteBuffer(global().immixTrace);
+  }
+
+  /****************************************************************************
+   *
+   * Mutator-time allocation
+   */
+
+  /**
+   * Allocate memory for an object. This class handles the default allocator
+   * from the immix space, and delegates everything else to the
+   * superclass.
+   *
+   * @param bytes The number of bytes required for the object.
+   * @param align Required alignment for the object.
+   * @param offset Offset associated with the alignment.
+   * @param allocator The allocator associated with this request.
+   * @return The low address of the allocated memory.
+   */
+  @Inline
+  @Override
+  public Address alloc(int bytes, int align, int offset, int allocator, int site) {
+    if (allocator == CImmix.ALLOC_DEFAULT)
+      return immix.alloc(bytes, align, offset);
+    return super.alloc(bytes, align, offset, allocator, site);
+  }
+
+  /**
+   * Perform post-allocation actions.  Initialize the object header for
+   * objects in the immix space, and delegate to the superclass for
+   * other objects.
+   *
+   * @param ref The newly allocated object
+   * @param typeRef the type reference for the instance being created
+   * @param bytes The size of the space to be allocated (in bytes)
+   * @param allocator The allocator number to be used for this allocation
+   */
+  @Inline
+  @Override
+  public void postAlloc(ObjectReference ref, ObjectReference typeRef,
+      int bytes, int allocator) {
+    if (allocator == CImmix.ALLOC_DEFAULT)
+      CImmix.immixSpace.postAlloc(ref, bytes);
+    else
+      super.postAlloc(ref, typeRef, bytes, allocator);
+  }
+
+  /**
+   * Return the allocator instance associated with a space
+   * <code>space</code>, for this plan instance.
+   *
+   * @param space The space for which the allocator instance is desired.
+   * @return The allocator instance associated with this plan instance
+   * which is allocating into <code>space</code>, or <code>null</code>
+   * if no appropriate allocator can be established.
+   */
+  public Allocator getAllocatorFromSpace(Space space) {
+    if (space == CImmix.immixSpace) return immix;
+    return super.getAllocatorFromSpace(space);
+  }
+
+  /****************************************************************************
+   *
+   * Collection
+   */
+
+  /**
+   * Perform a per-mutator collection phase.
+   *
+   * @param phaseId The collection phase to perform
+   * @param primary Perform any single-threaded activities using this thread.
+   */
+  @Inline
+  public void collectionPhase(short phaseId, boolean primary) {
+    if (phaseId == CImmix.PREPARE) {
+      super.collectionPhase(phaseId, primary);
+      immix.prepare();
+      return;
+    }
+
+    if (phaseId == CImmix.RELEASE) {
+      immix.release();
+      super.collectionPhase(phaseId, primary);
+      return;
+    }
+
+    super.collectionPhase(phaseId, primary);
+  }
+
+  /**
+   * Flush per-mutator remembered sets into the global remset pool.
+   */
+  @Override
+  public void flushRememberedSets() {
+    remset.flush();
+  }
+
+  /****************************************************************************
+   *
+   * Write and read barriers.
+   */
+
+  /**
+   * Process a reference that may require being enqueued as part of a concurrent
+   * collection.
+   *
+   * @param ref The reference to check.
+   */
+  protected void checkAndEnqueueReference(ObjectReference ref) {
+    if (ref.isNull()) return;
+    if (barrierActive) {
+      if      (Space.isInSpace(CImmix.IMMIX,      ref)) CImmix.immixSpace.fastTraceObject(remset, ref);
+      else if (Space.isInSpace(CImmix.IMMORTAL,   ref)) CImmix.immortalSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(CImmix.LOS,        ref)) CImmix.loSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(CImmix.NON_MOVING, ref)) CImmix.nonMovingSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(CImmix.SMALL_CODE, ref)) CImmix.smallCodeSpace.traceObject(remset, ref);
+      else if (Space.isInSpace(CImmix.LARGE_CODE, ref)) CImmix.largeCodeSpace.traceObject(remset, ref);
+    }
+
+    if (VM.VERIFY_ASSERTIONS) {
+      if (!Plan.gcInProgress()) {
+        if      (Space.isInSpace(CImmix.IMMIX,      ref)) VM.assertions._assert(CImmix.immixSpace.isLive(ref));
+        else if (Space.isInSpace(CImmix.IMMORTAL,   ref)) VM.assertions._assert(CImmix.immortalSpace.isLive(ref));
+        else if (Space.isInSpace(CImmix.LOS,        ref)) VM.assertions._assert(CImmix.loSpace.isLive(ref));
+        else if (Space.isInSpace(CImmix.NON_MOVING, ref)) VM.assertions._assert(CImmix.nonMovingSpace.isLive(ref));
+        else if (Space.isInSpace(CImmix.SMALL_CODE, ref)) VM.assertions._assert(CImmix.smallCodeSpace.isLive(ref));
+        else if (Space.isInSpace(CImmix.LARGE_CODE, ref)) VM.assertions._assert(CImmix.largeCodeSpace.isLive(ref));
+      }
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Miscellaneous
+   */
+
+  /** @return The active global plan as a <code>CImmix</code> instance. */
+  @Inline
+  private static CImmix global() {
+    return (CImmix) VM.activePlan.global();
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.concurrent.immix;
+
+import static org.mmtk.policy.immix.ImmixConstants.MARK_LINE_AT_SCAN_TIME;
+
+import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.Trace;
+import org.mmtk.policy.Space;
+import org.mmtk.vm.VM;
+
+import org.vmmagic.pragma.*;
+import org.vmmagic.unboxed.*;
+
+/**
+ * This class implements the thread-local functionality for a
+ * non-moving transitive closure over an immix space, which may run
+ * concurrently with the mutators.
+ */
+@Uninterruptible
+public final class CImmixTraceLocal extends TraceLocal {
+
+  /**
+   * Constructor
+   *
+   * @param trace The trace associated with this trace local.
+   */
+  public CImmixTraceLocal(Trace trace) {
+    super(CImmix.SCAN_IMMIX, trace);
+  }
+
+  /****************************************************************************
+   *
+   * Externally visible Object processing and tracing
+   */
+
+  /**
+   * Should reference values be overwritten as the heap is traced?
+   */
+  protected boolean overwriteReferenceDuringTrace() {
+    return false;
+  }
+
+  /**
+   * Is the specified object live?
+   *
+   * @param object The object.
+   * @return True if the object is live.
+   */
+  public boolean isLive(ObjectReference object) {
+    if (object.isNull()) return false;
+    if (Space.isInSpace(CImmix.IMMIX, object)) {
+      return CImmix.immixSpace.fastIsLive(object);
+    }
+    return super.isLive(object);
+  }
+
+  /**
+   * This method is the core method during the trace of the object graph.
+   * The role of this method is to:
+   *
+   * 1. Ensure the traced object is not collected.
+   * 2. If this is the first visit to the object enqueue it to be scanned.
+   * 3. Return the forwarded reference to the object.
+   *
+   * In this instance, we refer objects in the immix space to the
+   * immixSpace for tracing, and defer to the superclass for all others.
+   *
+   * @param object The object to be traced.
+   * @return The new reference to the same object instance.
+   */
+  @Inline
+  public ObjectReference traceObject(ObjectReference object) {
+    if (object.isNull()) return object;
+    if (Space.isInSpace(CImmix.IMMIX, object))
+      return CImmix.immixSpace.fastTraceObject(this, object);
+    return super.traceObject(object);
+  }
+
+  /**
+   * Ensure that the referenced object will not move from this point through
+   * to the end of the collection. This can involve forwarding the object
+   * if necessary.
+   *
+   * @param object The object that must not move during the collection.
+   * @return True If the object will not move during collection
+   */
+  @Inline
+  @Override
+  public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!CImmix.immixSpace.inImmixDefragCollection());
+    return true;
+  }
+
+  /**
+   * Scan an object, marking its lines if that is deferred to scan time.
+   *
+   * @param object The object to be scanned
+   */
+  @Inline
+  @Override
+  protected void scanObject(ObjectReference object) {
+    super.scanObject(object);
+    if (MARK_LINE_AT_SCAN_TIME && Space.isInSpace(CImmix.IMMIX, object))
+      CImmix.immixSpace.markLines(object);
+  }
+}
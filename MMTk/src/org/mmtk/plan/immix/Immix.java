@@ -62,7 +62,7 @@ public class Immix extends StopTheWorld {
    * Instance variables
    */
 
-  public final Trace immixTrace = new Trace(metaDataSpace);
+  public final Trace immixTrace = new Trace(metaDataSpace, true);
   /** will the next collection collect the whole heap? */
   public boolean nextGCWholeHeap = true;
   /** will this collection collect the whole heap */
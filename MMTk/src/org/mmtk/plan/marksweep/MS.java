@@ -53,7 +53,7 @@ public class MS extends StopTheWorld {
   /****************************************************************************
    * Instance variables
    */
-  public final Trace msTrace = new Trace(metaDataSpace);
+  public final Trace msTrace = new Trace(metaDataSpace, true);
 
 
   /*****************************************************************************
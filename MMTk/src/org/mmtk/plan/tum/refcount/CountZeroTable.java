@@ -1,66 +1,356 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
 package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.utility.Constants;
+import org.mmtk.utility.Conversions;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.Lock;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Extent;
 import org.vmmagic.unboxed.ObjectReference;
-import org.vmmagic.unboxed.ObjectReferenceArray;
+import org.vmmagic.unboxed.Word;
 
-import sun.rmi.runtime.Log;
 /**
- * Wrapper for ObjectReferenceDeque to access a FLUSHED!!!!! ObjectReferenceDeq
- * with functions contains and get
- * @author fre
+ * The zero count table: an open addressing hash set of the objects
+ * whose reference count is zero.<p>
+ *
+ * The table lives in raw pages acquired from a {@link RawPageSpace},
+ * so neither insertion nor growth allocates in the heap.  Slots are
+ * probed linearly.  Each slot holds the address of an object, with the
+ * low bit used as the <i>revived</i> flag set by the root scan.  Removed
+ * entries leave a tombstone until the table is next rehashed.<p>
  *
+ * The table persists across collections.  New entries are buffered in
+ * deques and folded in with {@link #drain(ObjectReferenceDeque)}, so its
+ * cost per collection is proportional to the number of new entries
+ * rather than to the size of the table.<p>
+ *
+ * Draining and sweeping are performed by all collector threads in
+ * parallel.  Room for the entries to be drained is reserved up front by
+ * {@link #reserve(int)}, so concurrent insertion only has to claim a
+ * slot with a compare and swap; each sweeping thread owns a stripe of
+ * the slots.  The threads count the entries they add and remove locally
+ * and fold their counts into the table once, at the end of their part
+ * of the phase.  Reserving, {@link #add(ObjectReference)} and
+ * {@link #compact()} must be performed by a single thread;
+ * {@link #revive(ObjectReference)} and {@link #contains(ObjectReference)}
+ * may be called concurrently with each other.
  */
 @Uninterruptible
-public class CountZeroTable  {
-	ObjectReferenceArray objects;
+public class CountZeroTable implements Constants {
+
+	/**
+	 * Callback used to decide the fate of each entry during a sweep.
+	 */
+	@Uninterruptible
+	public abstract static class Sweeper {
+		/**
+		 * @param object An object in the table
+		 * @param revived True if the root scan revived the object
+		 * @return True if the object should stay in the table
+		 */
+		public abstract boolean sweepEntry(ObjectReference object, boolean revived);
+	}
+
+	/** An unused slot */
+	private static final Word EMPTY = Word.zero();
+	/** A slot whose entry has been removed (no object lives at address zero) */
+	private static final Word DELETED = Word.one();
+	/** Flag set in the slot of an entry revived by the root scan */
+	private static final Word REVIVED = Word.one();
+
+	/** The smallest table fills exactly one page */
+	private static final int LOG_MIN_CAPACITY = LOG_BYTES_IN_PAGE - LOG_BYTES_IN_WORD;
+
+	/** The space providing the table's memory */
+	private final RawPageSpace space;
+	/** Protects the counters when threads fold in their local counts */
+	private final Lock lock = VM.newLock("CountZeroTable");
+
+	/** The first slot of the table, or zero if none has been acquired */
+	private Address base = Address.zero();
+	private int logCapacity = 0;
+	/** Number of entries */
+	private int entries = 0;
+	/** Number of slots holding an entry or a tombstone */
+	private int used = 0;
+
 	/**
 	 * Constructor
-	 * builds ObjectReferenceArray from ObjectReferenceDeque
-	 * @param deq ReferenceDeque - meant to be the zero-count-table
-	 * @param count number of elements in the Deque (is there an easier way?)
+	 *
+	 * @param space The space from which to acquire the table's pages
 	 */
-	public CountZeroTable(ObjectReferenceDeque deq, int count){
-		this();
-		init(deq,count);
+	public CountZeroTable(RawPageSpace space) {
+		this.space = space;
 	}
-	public CountZeroTable() {
+
+	/**
+	 * Fold the counts kept locally by one thread into the table.
+	 *
+	 * @param entryDelta The change in the number of entries
+	 * @param usedDelta The change in the number of used slots
+	 */
+	private void accumulate(int entryDelta, int usedDelta) {
+		if (entryDelta == 0 && usedDelta == 0) return;
+		lock.acquire();
+		entries += entryDelta;
+		used += usedDelta;
+		lock.release();
+	}
+
+	/**
+	 * @return the number of objects in the table
+	 */
+	@Inline
+	public int size() {
+		return entries;
 	}
+
 	/**
-	 * 
-	 * @param ref
-	 * 
-	 * @return true if @param ref is in the array
+	 * @return the number of slots in the table
 	 */
 	@Inline
-	public boolean contains(ObjectReference ref){
-		ObjectReference tobj=null;
-		for(int i=0;i<objects.length();i++){
-			if(objects.get(i).toAddress().EQ(ref.toAddress()))
-				return true;
+	private int capacity() {
+		return base.isZero() ? 0 : 1 << logCapacity;
+	}
+
+	/**
+	 * Make room for a number of new entries, so that they can then be
+	 * added concurrently by {@link #drain(ObjectReferenceDeque)} without
+	 * the table growing.
+	 *
+	 * @param additional An upper bound on the number of entries to be
+	 * added
+	 */
+	public void reserve(int additional) {
+		if ((used + additional) << 1 > capacity()) {
+			resize(entries + additional);
 		}
-		return false;
 	}
-	public ObjectReference get(int index){
-		VM.assertions._assert(index < objects.length());
-		return objects.get(index);
+
+	/**
+	 * Move every object buffered in a (flushed) deque into the table.
+	 * Called by every collector thread; the shared pool behind the
+	 * deques distributes the entries between them.  Room must have been
+	 * reserved for all of them.
+	 *
+	 * @param deq This thread's view of the buffered entries
+	 */
+	public void drain(ObjectReferenceDeque deq) {
+		int added = 0;
+		int consumed = 0;
+		ObjectReference object;
+		while (!(object = deq.pop()).isNull()) {
+			if (attemptInsert(object.toAddress().toWord())) {
+				consumed++;
+			}
+			added++;
+		}
+		accumulate(added, consumed);
 	}
-	public int indexOf(ObjectReference ref){
-		for(int i=0;i<objects.length();i++)
-			if(objects.get(i).toAddress().EQ(ref.toAddress()))
-				return i;
-		return -1;
+
+	/**
+	 * Add an object to the table.  The caller guarantees that the
+	 * object is not already present (see the ZCT header bit).
+	 *
+	 * @param object The object to add
+	 */
+	public void add(ObjectReference object) {
+		if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!object.isNull());
+		if ((used + 1) << 1 > capacity()) {
+			resize(entries + 1);
+		}
+		if (insert(base, logCapacity, object.toAddress().toWord())) {
+			used++;
+		}
+		entries++;
 	}
-	@Uninterruptible
-	public void init(ObjectReferenceDeque deq, int count) {
-		VM.assertions._assert(deq.isFlushed());
-		objects = ObjectReferenceArray.create(count);
-		org.mmtk.utility.Log.writeln("CZT_init()");
-		for(int i=0;i<count;i++){
-			objects.set(i, deq.pop());
-			org.mmtk.utility.Log.writeln(objects.get(i));
+
+	/**
+	 * @param object The object in question
+	 * @return true if the object is in the table
+	 */
+	@Inline
+	public boolean contains(ObjectReference object) {
+		return !find(object).isZero();
+	}
+
+	/**
+	 * Flag an object in the table as referenced from the roots, so that
+	 * it survives the current sweep.
+	 *
+	 * @param object The object found by the root scan
+	 * @return true if the object is in the table and was revived by
+	 * this call
+	 */
+	@Inline
+	public boolean revive(ObjectReference object) {
+		Address slot = find(object);
+		if (slot.isZero()) return false;
+		Word oldValue;
+		do {
+			oldValue = slot.prepareWord();
+			if (oldValue.and(REVIVED).EQ(REVIVED)) return false;
+		} while (!slot.attempt(oldValue, oldValue.or(REVIVED)));
+		return true;
+	}
+
+	/**
+	 * Pass every entry in one stripe of the table to the sweeper,
+	 * dropping those it rejects and clearing the revived flag of those
+	 * it keeps.  Each of <code>parts</code> threads sweeps its own
+	 * stripe; afterwards a single thread should call {@link #compact()}.
+	 *
+	 * @param sweeper The policy deciding which entries stay
+	 * @param part The stripe swept by this thread
+	 * @param parts The number of stripes (threads)
+	 */
+	public void sweep(Sweeper sweeper, int part, int parts) {
+		int stripe = capacity() / parts;
+		Address start = base.plus((stripe * part) << LOG_BYTES_IN_WORD);
+		Address end = (part == parts - 1) ? base.plus(capacity() << LOG_BYTES_IN_WORD) : start.plus(stripe << LOG_BYTES_IN_WORD);
+		int removed = 0;
+		for (Address slot = start; slot.LT(end); slot = slot.plus(BYTES_IN_WORD)) {
+			Word value = slot.loadWord();
+			if (value.EQ(EMPTY) || value.EQ(DELETED)) continue;
+			ObjectReference object = value.and(REVIVED.not()).toAddress().toObjectReference();
+			if (sweeper.sweepEntry(object, value.and(REVIVED).EQ(REVIVED))) {
+				slot.store(object.toAddress().toWord());
+			} else {
+				slot.store(DELETED);
+				removed++;
+			}
+		}
+		accumulate(-removed, 0);
+	}
+
+	/**
+	 * Rehash the table if tombstones have accumulated or it has become
+	 * sparse.
+	 */
+	public void compact() {
+		if (used << 1 > capacity() || (entries << 3 < capacity() && logCapacity > LOG_MIN_CAPACITY)) {
+			resize(entries);
+		}
+	}
+
+	/**
+	 * Find the slot holding an object.
+	 *
+	 * @param object The object to look up
+	 * @return The slot, or zero if the object is not in the table
+	 */
+	@Inline
+	private Address find(ObjectReference object) {
+		if (base.isZero()) return Address.zero();
+		Word key = object.toAddress().toWord();
+		int mask = (1 << logCapacity) - 1;
+		int index = hash(key, logCapacity);
+		while (true) {
+			Address slot = base.plus(index << LOG_BYTES_IN_WORD);
+			Word value = slot.loadWord();
+			if (value.EQ(EMPTY)) return Address.zero();
+			if (value.and(REVIVED.not()).EQ(key)) return slot;
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Insert a key into a table, reusing the first tombstone on its
+	 * probe sequence.
+	 *
+	 * @param table The first slot of the table
+	 * @param logSlots The log of the number of slots in the table
+	 * @param key The key to insert
+	 * @return true if a previously empty slot was consumed
+	 */
+	@Inline
+	private static boolean insert(Address table, int logSlots, Word key) {
+		int mask = (1 << logSlots) - 1;
+		int index = hash(key, logSlots);
+		while (true) {
+			Address slot = table.plus(index << LOG_BYTES_IN_WORD);
+			Word value = slot.loadWord();
+			if (value.EQ(EMPTY) || value.EQ(DELETED)) {
+				slot.store(key);
+				return value.EQ(EMPTY);
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Insert a key into the table concurrently with other insertions,
+	 * claiming an empty slot or a tombstone with a compare and swap.
+	 *
+	 * @param key The key to insert
+	 * @return true if a previously empty slot was consumed
+	 */
+	@Inline
+	private boolean attemptInsert(Word key) {
+		int mask = (1 << logCapacity) - 1;
+		int index = hash(key, logCapacity);
+		while (true) {
+			Address slot = base.plus(index << LOG_BYTES_IN_WORD);
+			Word value = slot.prepareWord();
+			if ((value.EQ(EMPTY) || value.EQ(DELETED)) && slot.attempt(value, key)) {
+				return value.EQ(EMPTY);
+			}
+			if (value.EQ(EMPTY) || value.EQ(DELETED)) continue; // lost the race for this slot
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * Fibonacci hash of an object address, ignoring the alignment bits.
+	 */
+	@Inline
+	private static int hash(Word key, int logSlots) {
+		return (key.rshl(LOG_BYTES_IN_WORD).toInt() * 0x9E3779B1) >>> (BITS_IN_INT - logSlots);
+	}
+
+	/**
+	 * Rehash the table into a fresh table large enough to hold
+	 * <code>required</code> entries at a load factor of at most one half.
+	 * Revived flags and tombstones are not carried over.
+	 *
+	 * @param required The number of entries the new table must hold
+	 */
+	private void resize(int required) {
+		int newLog = LOG_MIN_CAPACITY;
+		while ((1 << newLog) < required << 1) newLog++;
+		Extent bytes = Extent.fromIntZeroExtend(1 << (newLog + LOG_BYTES_IN_WORD));
+		Address newBase = space.acquire(Conversions.bytesToPages(bytes));
+		if (newBase.isZero()) {
+			VM.assertions.fail("Failed to allocate space for the zero count table.");
+		}
+		VM.memory.zero(newBase, bytes);
+		if (!base.isZero()) {
+			Address end = base.plus(capacity() << LOG_BYTES_IN_WORD);
+			for (Address slot = base; slot.LT(end); slot = slot.plus(BYTES_IN_WORD)) {
+				Word value = slot.loadWord();
+				if (value.EQ(EMPTY) || value.EQ(DELETED)) continue;
+				insert(newBase, newLog, value.and(REVIVED.not()));
+			}
+			space.release(base);
 		}
+		base = newBase;
+		logCapacity = newLog;
+		used = entries;
 	}
 }
@@ -18,10 +18,14 @@ import org.mmtk.plan.Trace;
 import org.mmtk.plan.TransitiveClosure;
 import org.mmtk.policy.ExplicitFreeListSpace;
 import org.mmtk.policy.Space;
-import org.mmtk.utility.Log;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.utility.deque.SharedDeque;
 import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.ConcurrentTrigger;
+import org.mmtk.utility.options.CycleFilterThreshold;
+import org.mmtk.utility.options.CycleMetaDataLimit;
+import org.mmtk.utility.options.CycleTriggerThreshold;
+import org.mmtk.utility.options.GCTimeCap;
 import org.mmtk.utility.options.Options;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
@@ -30,29 +34,105 @@ import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.ObjectReference;
 
 
+/**
+ * This class implements the global state of a deferred reference
+ * counting collector.<p>
+ *
+ * Mutators do not touch reference counts.  Instead a coalescing
+ * (Levanoni-Petrank) write barrier logs each object the first time it
+ * is modified in an epoch, buffering the object and the snapshot of its
+ * referents.  At the start of each collection the collector threads
+ * increment the current referents of every logged object and decrement
+ * the snapshot, so repeated stores to a field between two collections
+ * cost nothing beyond the first.
+ * References held in stacks, registers and statics are not counted
+ * between collections; an object whose count drops to zero (or which
+ * is newly allocated) is entered into the zero count table (ZCT) and
+ * is only reclaimed once a root scan shows it is not referenced from
+ * the roots either.<p>
+ *
+ * Reclaimed objects are freed from an explicit work list, decrementing
+ * their children as they go.  When a collection is started early, by
+ * the <code>ConcurrentTrigger</code> option, the pause ends once the zero
+ * count table has been swept and the work list is drained by the
+ * concurrent workers alongside the mutators; a second, short pause then
+ * completes the collection.  Otherwise freeing happens in the pause,
+ * within a per-collection time budget.<p>
+ *
+ * Garbage cycles are reclaimed by trial deletion ({@link TrialDeletion})
+ * once the heap runs low, with the buffered cycle candidates filtered
+ * earlier to bound their metadata.  An emergency collection instead
+ * falls back to a full backup trace that sweeps every unmarked cell.
+ */
 @Uninterruptible
 public class RefCount extends StopTheWorld {
-//
-	private static int count = 0;
-	  public final static SharedDeque zcts = new SharedDeque("zcts",metaDataSpace, 1);
+	/** Objects whose counts dropped to zero, on their way into the zero count table */
+	public static final SharedDeque zcts = new SharedDeque("zcts", metaDataSpace, 1);
+	/** The zero count table, fed from <code>zcts</code> at each collection */
+	public static final CountZeroTable zct = new CountZeroTable(metaDataSpace);
+	/** Objects logged (or allocated) since the last collection */
+	public static final SharedDeque modPool = new SharedDeque("mod", metaDataSpace, 1);
+	/** Targets of stores into objects outside the reference counted space */
+	public static final SharedDeque incPool = new SharedDeque("inc", metaDataSpace, 1);
+	public static final SharedDeque decPool = new SharedDeque("dec", metaDataSpace, 1);
+	/** Dead objects waiting to be freed, possibly carried over to a later collection */
+	public static final SharedDeque freePool = new SharedDeque("free", metaDataSpace, 1);
+	public static final SharedDeque rootPool = new SharedDeque("root", metaDataSpace, 1);
+	/** Possible roots of garbage cycles, kept across collections */
+	public static final SharedDeque cyclePool = new SharedDeque("cycle", metaDataSpace, 1);
+	public static final SharedDeque cycleRootPool = new SharedDeque("cycle roots", metaDataSpace, 1);
+	public static final SharedDeque cycleWorkPool = new SharedDeque("cycle work", metaDataSpace, 1);
+	public static final SharedDeque cycleBlackPool = new SharedDeque("cycle black", metaDataSpace, 1);
+	/** Objects marked by a backup trace, whose marks are cleared after the sweep */
+	public static final SharedDeque markedPool = new SharedDeque("marked", metaDataSpace, 1);
 	/****************************************************************************
 	 * Class variables
 	 */
 	public static final ExplicitFreeListSpace rcSpace = new ExplicitFreeListSpace("rc", VMRequest.create());
-	//private static final RefCountSweeper sweeper = new RefCountSweeper();
 
 	public static final int RC_DESC = rcSpace.getDescriptor();
 	public static final int SCAN_MARK = 0;
 
 	public final static Trace refCountTrace = new Trace(metaDataSpace);
 
+	public static final short PROCESS_MODBUFFER = Phase.createSimple("mods");
+	public static final short PROCESS_DECBUFFER = Phase.createSimple("decs");
 	public static final short PREPARE_ZCT = Phase.createSimple("prepareZCT");
 	public static final short PROCESS_ZCT = Phase.createSimple("processZCT");
+	public static final short PROCESS_FREE = Phase.createSimple("free");
 	public static final short TRACE_ROOT_SET = Phase.createSimple("traceRootSet");
+	public static final short PROCESS_CYCLES = Phase.createSimple("cycles");
 
+	/**
+	 * Free the dead objects on the concurrent workers, while the mutators
+	 * run.  Collections not started by the concurrent trigger free them
+	 * in the pause instead, within the time budget.
+	 */
+	public static final short CONCURRENT_FREE = Phase.createConcurrent("concurrent-free",
+			Phase.scheduleCollector(PROCESS_FREE));
+
+	/** Trace reference counting activity to the log (compiled out when false) */
+	public static final boolean TRACE_RC = false;
+
+	/** Fall back to a backup trace in emergency collections */
+	public static final boolean CC_BACKUP_TRACE = true;
+
+	/**
+	 * Apply the buffered increments before the buffered decrements, so
+	 * that no count transiently drops below its true value.
+	 */
+	protected static final short process_buffers = Phase.createComplex("process-buffers",
+		      Phase.scheduleMutator    (PROCESS_MODBUFFER),
+		      Phase.scheduleGlobal     (PROCESS_MODBUFFER),
+		      Phase.scheduleCollector  (PROCESS_MODBUFFER),
+		      Phase.scheduleMutator    (PROCESS_DECBUFFER),
+		      Phase.scheduleGlobal     (PROCESS_DECBUFFER),
+		      Phase.scheduleCollector  (PROCESS_DECBUFFER));
 	protected static final short process_zct = Phase.createComplex("process-zct",
 		      Phase.scheduleCollector  (PROCESS_ZCT),
-		      Phase.scheduleGlobal     (PROCESS_ZCT));
+		      Phase.scheduleGlobal     (PROCESS_ZCT),
+		      Phase.scheduleGlobal     (PROCESS_FREE),
+		      Phase.scheduleConcurrent (CONCURRENT_FREE));
 	protected static final short prepare_zct = Phase.createComplex("prepare-zct",
 		      Phase.scheduleMutator     (PREPARE_ZCT),
 		      Phase.scheduleGlobal     (PREPARE_ZCT),
@@ -73,31 +153,53 @@ public class RefCount extends StopTheWorld {
 
 	public  short collection = Phase.createComplex("collection", null,
 			Phase.scheduleComplex(initPhase),
+			Phase.scheduleComplex(process_buffers),
 			Phase.scheduleComplex(prepare_zct),
 			Phase.scheduleComplex(rootClosurePhase),
 			Phase.scheduleComplex(process_zct),
+			Phase.scheduleGlobal(PROCESS_CYCLES),
+			Phase.scheduleCollector(PROCESS_CYCLES),
 			Phase.scheduleComplex(completeClosurePhase),
 			Phase.scheduleComplex(finishPhase)
 	);
 
 
-	/****************************************************************************
-	 * Instance variables
-	 */
-//	public final Trace rcTrace = new Trace(metaDataSpace);
+	/** When the current collection started */
+	private static long collectionStart;
+	/** When freeing must stop in the current collection */
+	private static long freeDeadline;
+
+	/** Collect cycles by trial deletion in this collection */
+	public static boolean performCycleCollection;
+	/** Only filter the cycle candidates in this collection */
+	public static boolean performCycleFilter;
+	/** Reclaim garbage (including cycles) by a backup trace in this collection */
+	public static boolean performBackupTrace;
 
+	/** Reference counting event counts of the global (single-threaded) phases */
+	private final RefCountStats stats = new RefCountStats();
+	private final RefCountBackupSweeper backupSweeper = new RefCountBackupSweeper(stats);
+	private final ObjectReferenceDeque markedBuffer = new ObjectReferenceDeque("marked", markedPool);
+
+	static {
+		Options.gcTimeCap = new GCTimeCap();
+		Options.concurrentTrigger = new ConcurrentTrigger();
+		Options.cycleFilterThreshold = new CycleFilterThreshold();
+		Options.cycleMetaDataLimit = new CycleMetaDataLimit();
+		Options.cycleTriggerThreshold = new CycleTriggerThreshold();
+	}
 
 	/*****************************************************************************
 	 * Collection
 	 */
 	public static final boolean isRefCountObject(ObjectReference object) {
-		return !object.isNull();// && !Space.isInSpace(RC_DESC, object);
+		return !object.isNull();
 	}
 public RefCount(){
 	Options.noFinalizer.setDefaultValue(true);
 	Options.noReferenceTypes.setDefaultValue(true);
 }
-//	public Trace rootTrace;
+
 	/**
 	 * Perform a (global) collection phase.
 	 *
@@ -106,44 +208,112 @@ public RefCount(){
 	@Inline
 	@Override
 	public void collectionPhase(short phaseId) {
-//		Log.writeln("RefCount.collectionPhase("+phaseId+")");
+		if (phaseId == SET_COLLECTION_KIND) {
+			collectionStart = VM.statistics.nanoTime();
+			super.collectionPhase(phaseId);
+			boolean lowMemory = emergencyCollection || collectionAttempt > 1;
+			performBackupTrace = CC_BACKUP_TRACE && emergencyCollection;
+			performCycleCollection = !performBackupTrace && (lowMemory
+					|| getPagesAvail() < Options.cycleTriggerThreshold.getPages()
+					|| cyclePool.enqueuedPages() > Options.cycleMetaDataLimit.getPages());
+			performCycleFilter = getPagesAvail() < Options.cycleFilterThreshold.getPages();
+			return;
+		}
 		if (phaseId == PREPARE) {
-			//			 try to kill all elements from ZCT
-//			Log.writeln("PREPARE");
-//			super.collectionPhase(phaseId);
 			VM.finalizableProcessor.clear();
 			VM.weakReferences.clear();
 			VM.softReferences.clear();
 			VM.phantomReferences.clear();
 			refCountTrace.prepare();
 			rcSpace.prepare();
+			rootPool.prepare();
+			if (performBackupTrace) markedPool.prepare();
 			return;
 		}
 		
 		if (phaseId == CLOSURE) {
-//			Log.writeln("CLOSURE");
 			refCountTrace.prepare();
 			return;
 		}
 		if (phaseId == RELEASE) {
 			refCountTrace.release();
-//			Log.writeln("RELEASE");
-			rcSpace.release();
-			setCount(0);
+			if (performBackupTrace) {
+				rcSpace.sweepCells(backupSweeper);
+				ObjectReference object;
+				while (!(object = markedBuffer.pop()).isNull()) {
+					RefCountHeader.clearMarked(object);
+				}
+				stats.flush();
+			} else {
+				rcSpace.release();
+			}
+			return;
+		}
+		if (phaseId == PROCESS_MODBUFFER) {
+			modPool.prepare();
+			incPool.prepare();
+			return;
+		}
+		if (phaseId == PROCESS_DECBUFFER) {
+			decPool.prepare();
 			return;
 		}
 		if (phaseId == PREPARE_ZCT) {
-			Log.writeln("GLOBAL_PREPARE_ZCT");
+			zcts.prepare();
+			/* Every buffered entry fits in the table, so the collectors can drain in parallel */
+			zct.reserve(zcts.enqueuedPages() << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_ADDRESS));
 			return;
 		}
-		if(phaseId==PROCESS_ZCT){
-
-			//rcSpace.sweepCells(sweeper);
+		if (phaseId == PROCESS_ZCT) {
+			zct.compact();
+			RefCountStats.countZCT(zct.size());
+			return;
+		}
+		if (phaseId == PROCESS_FREE) {
+			freePool.prepare();
+			if (emergencyCollection || collectionAttempt > 1) {
+				freeDeadline = Long.MAX_VALUE;
+			} else {
+				freeDeadline = collectionStart + 1000L * Options.gcTimeCap.getMicroseconds();
+			}
+			return;
+		}
+		if (phaseId == PROCESS_CYCLES) {
+			cyclePool.prepare();
+			cycleRootPool.prepare();
+			cycleWorkPool.prepare();
+			cycleBlackPool.prepare();
 			return;
 		}
 		super.collectionPhase(phaseId);
 	}
 
+	/**
+	 * Freeing dead objects stops at this time, so that a large dead
+	 * structure is freed over several collections instead of stretching
+	 * one pause.  The budget is the <code>GCTimeCap</code> option,
+	 * measured from the start of the collection, and is lifted when
+	 * memory is short.
+	 *
+	 * @return The deadline for freeing in the current collection
+	 */
+	@Inline
+	public static long getFreeDeadline() {
+		return freeDeadline;
+	}
+
+	/**
+	 * Start a collection early, so that its dead objects can be freed
+	 * concurrently, once the heap is filled beyond the concurrent trigger.
+	 *
+	 * @return True if a concurrent collection should be triggered
+	 */
+	@Override
+	protected boolean concurrentCollectionRequired() {
+		return !Phase.concurrentPhaseActive() &&
+			((getPagesReserved() * 100) / getTotalPages()) > Options.concurrentTrigger.getValue();
+	}
+
 	/*****************************************************************************
 	 * Accounting
 	 */
@@ -153,7 +323,7 @@ public RefCount(){
 	/**
 	 * Return the number of pages reserved for use given the pending
 	 * allocation.  The superclass accounts for its spaces, we just
-	 * augment this with the mark-sweep space's contribution.
+	 * augment this with the reference counted space's contribution.
 	 *
 	 * @return The number of pages reserved given the pending
 	 * allocation, excluding space reserved for copying.
@@ -179,21 +349,4 @@ public RefCount(){
 			return true;
 		return super.willNeverMove(object);
 	}
-//	@Interruptible
-//	@Override
-//	protected void registerSpecializedMethods() {
-//		// TODO Auto-generated method stub
-//		super.registerSpecializedMethods();
-//	}
-	public synchronized static void setCount(int ncount) {
-		RefCount.count = ncount;
-	}
-	public synchronized static int getCount() {
-		Log.writeln("counter");
-		Log.writeln(RefCount.count);
-		return count;
-	}
-	public synchronized static void incCount(){
-		count++;
-	}
 }
@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.ExplicitFreeListSpace;
+import org.mmtk.policy.Space;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Sweeps the reference counted space after a backup trace, freeing
+ * every cell the trace did not mark.  Garbage cycles, which reference
+ * counting alone never reclaims, are freed here.<p>
+ *
+ * The counts of marked objects referenced from a freed cell are
+ * decremented so they stay exact.  Marks are cleared only after the
+ * sweep, so a marked child is recognised whichever order the cells are
+ * visited in.
+ */
+@Uninterruptible
+public final class RefCountBackupSweeper extends ExplicitFreeListSpace.Sweeper {
+
+	private final DecMarked decMarked = new DecMarked();
+	private final RefCountStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param stats The event counts to which freed cells are added
+	 */
+	public RefCountBackupSweeper(RefCountStats stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public boolean sweepCell(ObjectReference object) {
+		if (!RefCountHeader.isMarked(object)) {
+			VM.scanning.scanObject(decMarked, object);
+			stats.countFreed(object);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Decrements the marked children of a dead cell.  A child that is
+	 * left with a zero count is referenced from the roots only, and is
+	 * entered into the zero count table.
+	 */
+	@Uninterruptible
+	private static final class DecMarked extends TransitiveClosure {
+		@Override
+		@Inline
+		public void processEdge(ObjectReference source, Address slot) {
+			ObjectReference child = slot.loadObjectReference();
+			if (child.isNull() || !Space.isInSpace(RefCount.RC_DESC, child) || !RefCountHeader.isMarked(child)) {
+				return;
+			}
+			if (RefCountHeader.decRC(child) == RefCountHeader.DEC_KILL && RefCountHeader.attemptToEnterZCT(child)) {
+				RefCount.zct.add(child);
+			}
+		}
+	}
+}
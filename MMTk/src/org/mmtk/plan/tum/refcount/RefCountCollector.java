@@ -14,134 +14,346 @@ package org.mmtk.plan.tum.refcount;
 
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.Phase;
-import org.mmtk.plan.StopTheWorldCollector;
+import org.mmtk.plan.Plan;
+import org.mmtk.plan.Trace;
 import org.mmtk.plan.TraceLocal;
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.plan.concurrent.ConcurrentCollector;
+import org.mmtk.policy.Space;
 import org.mmtk.utility.Log;
-import org.mmtk.utility.deque.AddressPairDeque;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.Unpreemptible;
 import org.vmmagic.unboxed.ObjectReference;
 
 /**
  * This class implements <i>per-collector thread</i> behavior
- * and state for the <i>MS</i> plan, which implements a full-heap
- * mark-sweep collector.<p>
+ * and state for the <i>RefCount</i> plan, which implements a deferred
+ * reference counting collector.<p>
  *
- * Specifically, this class defines <i>MS</i> collection behavior
+ * Specifically, this class defines <i>RefCount</i> collection behavior
  * (through <code>trace</code> and the <code>collectionPhase</code>
  * method).<p>
  *
- * @see RefCount for an overview of the mark-sweep algorithm.<p>
+ * @see RefCount for an overview of the reference counting algorithm.<p>
  *
  * @see RefCount
  * @see RefCountMutator
- * @see StopTheWorldCollector
+ * @see ConcurrentCollector
  * @see CollectorContext
  */
 @Uninterruptible
-public class RefCountCollector extends StopTheWorldCollector {
-//	protected final ObjectReferenceDeque ZCT = new ObjectReferenceDeque("zct", global().zcts);
-	
-	//	/****************************************************************************
-	//	 * Instance fields
-	//	 */
-	protected static RefCountTraceRoots rctl = new RefCountTraceRoots(global().refCountTrace, null);
-	public static ObjectReferenceDeque ZCT = new ObjectReferenceDeque("zct", RefCount.zcts);
-	private static CountZeroTable ZCT_wrapper;
-//	protected TraceLocal currentTrace = rctl;
-	//
-	//
-	//	/****************************************************************************
-	//	 * Collection
-	//	 */
-	//
-	//	/**
-	//	 * Perform a per-collector collection phase.
-	//	 *
-	//	 * @param phaseId The collection phase to perform
-	//	 * @param primary Perform any single-threaded activities using this thread.
-	//	 */
-	public RefCountCollector(){
-		super();
-		ZCT_wrapper = new CountZeroTable();
+public class RefCountCollector extends ConcurrentCollector {
+	/****************************************************************************
+	 * Instance fields
+	 */
+	/** Number of objects freed between two checks of the time budget */
+	private static final int FREE_BUDGET_CHECK_INTERVAL = 256;
+
+	/** Reference counting event counts of this collector */
+	protected final RefCountStats stats = new RefCountStats();
+	private final ObjectReferenceDeque rootBuffer = new ObjectReferenceDeque("root", RefCount.rootPool);
+	private final ObjectReferenceDeque markedBuffer = new ObjectReferenceDeque("marked", RefCount.markedPool);
+	protected final RefCountTraceRoots rctl;
+	private final ObjectReferenceDeque modBuffer = new ObjectReferenceDeque("mod", RefCount.modPool);
+	private final ObjectReferenceDeque incBuffer = new ObjectReferenceDeque("inc", RefCount.incPool);
+	private final RefCountModifiedProcessor modProcessor = new RefCountModifiedProcessor(stats);
+	private final ObjectReferenceDeque decBuffer = new ObjectReferenceDeque("dec", RefCount.decPool);
+	private final ObjectReferenceDeque zct = new ObjectReferenceDeque("zct", RefCount.zcts);
+	private final RefCountFreeBuffer freeBuffer = new RefCountFreeBuffer(RefCount.freePool, this);
+	private final ZCTSweeper zctSweeper = new ZCTSweeper(freeBuffer);
+	private final ObjectReferenceDeque cycleBuffer = new ObjectReferenceDeque("cycle", RefCount.cyclePool);
+	private final TrialDeletion trialDeletion = new TrialDeletion(this, cycleBuffer);
+
+	/**
+	 * Constructor
+	 */
+	public RefCountCollector() {
+		rctl = newRootTrace(RefCount.refCountTrace, rootBuffer, markedBuffer, stats);
+	}
+
+	/**
+	 * Create the trace used to scan the roots.  Called from the
+	 * constructor, so overriding methods must not depend on the state
+	 * of the subclass.
+	 *
+	 * @param trace The global trace
+	 * @param rootBuffer Receives every object flagged as a root
+	 * @param markedBuffer Receives every object marked by a backup trace
+	 * @param stats The event counts of this collector
+	 * @return The root trace of this collector
+	 */
+	protected RefCountTraceRoots newRootTrace(Trace trace, ObjectReferenceDeque rootBuffer,
+			ObjectReferenceDeque markedBuffer, RefCountStats stats) {
+		return new RefCountTraceRoots(trace, rootBuffer, markedBuffer, stats);
 	}
+
+	/**
+	 * @return The closure applied to the objects logged by the write
+	 * barrier, incrementing their referents
+	 */
+	protected TransitiveClosure getModifiedProcessor() {
+		return modProcessor;
+	}
+
+	/**
+	 * Increment an object stored into an object outside the reference
+	 * counted space since the last collection.
+	 *
+	 * @param object The object that was stored
+	 */
+	@Inline
+	protected void incrementStored(ObjectReference object) {
+		if (Space.isInSpace(RefCount.RC_DESC, object)) {
+			stats.countIncrement();
+			RefCountHeader.incRC(object);
+		}
+	}
+
+	/****************************************************************************
+	 * Collection
+	 */
+
+	/**
+	 * Perform a per-collector collection phase.
+	 *
+	 * @param phaseId The collection phase to perform
+	 * @param primary Perform any single-threaded activities using this thread.
+	 */
 	@Inline
 	@Override
 	public void collectionPhase(short phaseId, boolean primary) {
-//		Log.writeln("RefCountCollector.collectionPhase("+phaseId+", "+primary+")");
 		if (phaseId == RefCount.PREPARE) {
-//			RefCount.rcSpace.prepare();
-//				for(ObjectReference obj : RefCount.ZCT){
-//					RefCount.rcSpace.free(obj);
-////					System.out.print(".");
-//
-//				}
-//				RefCount.rcSpace.release();
-//			Log.writeln("PREPARE");
 			super.collectionPhase(phaseId, primary);
-//			rctl.prepare();
 			return;
 		}
 		if (phaseId == RefCount.CLOSURE) {
-//			Log.writeln("CLOSURE\t"+RefCount.freeMemory());
 			rctl.completeTrace();
+			markedBuffer.flushLocal();
 			return;
 		}
 
 		if (phaseId == RefCount.RELEASE) {
-
-//			Log.writeln("RELEASE\t"+RefCount.freeMemory());
-//			rctl.release();
+			ObjectReference current;
+			while (!(current = rootBuffer.pop()).isNull()) {
+				RefCountHeader.clearRoot(current);
+			}
+			rctl.release();
+			stats.flush();
+			if (RefCount.TRACE_RC) {
+				Log.write("[RC] free MB: ");
+				Log.writeln(RefCount.freeMemory().toInt() >>> 20);
+			}
 			super.collectionPhase(phaseId, primary);
 			return;
 		}
+		if (phaseId == RefCount.PROCESS_MODBUFFER) {
+			ObjectReference current;
+			while (!(current = modBuffer.pop()).isNull()) {
+				RefCountHeader.makeUnlogged(current);
+				VM.scanning.scanObject(getModifiedProcessor(), current);
+			}
+			while (!(current = incBuffer.pop()).isNull()) {
+				incrementStored(current);
+			}
+			return;
+		}
+		if (phaseId == RefCount.PROCESS_DECBUFFER) {
+			ObjectReference current;
+			while (!(current = decBuffer.pop()).isNull()) {
+				stats.countDecrement();
+				int result = RefCountHeader.decRC(current);
+				if (result == RefCountHeader.DEC_KILL) {
+					enterZCT(current);
+				} else if (result == RefCountHeader.DEC_ALIVE) {
+					trialDeletion.possibleRoot(current);
+				}
+			}
+			zct.flushLocal();
+			cycleBuffer.flushLocal();
+			return;
+		}
 		if (phaseId == RefCount.PREPARE_ZCT){
-			Log.writeln("COLLECTOR_PREPARE_ZCT");
-			ZCT.flushLocal();
-			ZCT_wrapper.init(ZCT,RefCount.getCount());	
+			RefCount.zct.drain(zct);
 			return;
 		}
 		if (phaseId == RefCount.PROCESS_ZCT){
-			Log.writeln("COLLECTOR_PROCESS_ZCT");
-			//TODO process roots
-//			Log.writeln("computeThreadRoots");
-//			VM.scanning.computeThreadRoots(rctl);
-//			Log.writeln("computeStaticRoots");
-//			VM.scanning.computeStaticRoots(rctl);
-		
+			RefCount.zct.sweep(zctSweeper, parallelWorkerOrdinal(), parallelWorkerCount());
+			freeBuffer.flushLocal();
+			return;
+		}
+		if (phaseId == RefCount.PROCESS_FREE) {
+			processFreeBuffer();
+			return;
+		}
+		if (phaseId == RefCount.PROCESS_CYCLES) {
+			if (primary) {
+				if (RefCount.performBackupTrace) {
+					trialDeletion.discard();
+				} else if (RefCount.performCycleCollection) {
+					trialDeletion.collectCycles();
+				} else if (RefCount.performCycleFilter) {
+					trialDeletion.filter();
+				}
+				zct.flushLocal();
+			}
 			return;
 		}
-		Log.writeln(RefCount.freeMemory().toInt()/(1024f*1024f));
-
 		super.collectionPhase(phaseId, primary);
 	}
-	//
-	//
-	//	/****************************************************************************
-	//	 * Miscellaneous
-	//	 */
-	
+
+	/**
+	 * Free dead objects from the work list, cascading to their children,
+	 * until either the list is empty or the time budget for this
+	 * collection is spent.  Whatever is left stays in the shared pool
+	 * and is picked up by the next collection; those objects are
+	 * unreachable, so deferring them is safe.
+	 */
+	private void processFreeBuffer() {
+		long deadline = RefCount.getFreeDeadline();
+		int untilCheck = FREE_BUDGET_CHECK_INTERVAL;
+		ObjectReference current;
+		while (!(current = freeBuffer.pop()).isNull()) {
+			freeBuffer.free(current);
+			if (--untilCheck == 0) {
+				if (VM.statistics.nanoTime() > deadline) break;
+				untilCheck = FREE_BUDGET_CHECK_INTERVAL;
+			}
+		}
+		freeBuffer.flushLocal();
+		zct.flushLocal();
+		cycleBuffer.flushLocal();
+	}
+
+	/**
+	 * Free dead objects concurrently with the mutators.  The dead objects
+	 * are unreachable and the mutators never touch reference counts, so
+	 * only the live bits are contended.  Root flags stay set until the
+	 * collection completes, so a child referenced from the roots is still
+	 * kept.  If a collection is requested meanwhile the work is abandoned
+	 * and the rest of the list is left to that collection.
+	 *
+	 * @param phaseId The concurrent phase to perform
+	 */
+	@Override
+	@Unpreemptible
+	public void concurrentCollectionPhase(short phaseId) {
+		if (phaseId == RefCount.CONCURRENT_FREE) {
+			if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!Plan.gcInProgress());
+			int untilCheck = FREE_BUDGET_CHECK_INTERVAL;
+			ObjectReference current;
+			while (!(current = freeBuffer.pop()).isNull()) {
+				freeBuffer.free(current);
+				if (--untilCheck == 0) {
+					if (group.isAborted()) break;
+					untilCheck = FREE_BUDGET_CHECK_INTERVAL;
+				}
+			}
+			freeBuffer.flushLocal();
+			zct.flushLocal();
+			cycleBuffer.flushLocal();
+			stats.flush();
+			if (rendezvous() == 0 && !group.isAborted()) {
+				/* The rest of the collection is atomic, so this resumes it */
+				boolean nextConcurrent = Phase.notifyConcurrentPhaseComplete();
+				if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!nextConcurrent);
+			}
+			rendezvous();
+			return;
+		}
+		super.concurrentCollectionPhase(phaseId);
+	}
+
+	/**
+	 * Only the concurrent closure of a tracing collector needs this.
+	 *
+	 * @return True
+	 */
+	@Override
+	protected boolean concurrentTraceComplete() {
+		return true;
+	}
+
+	/**
+	 * Buffer an object whose count was decremented but stays above zero
+	 * as a possible root of a garbage cycle.
+	 *
+	 * @param object The object whose count was decremented
+	 */
+	@Inline
+	public final void possibleCycleRoot(ObjectReference object) {
+		trialDeletion.possibleRoot(object);
+	}
+
+	/**
+	 * Enter an object whose count has dropped to zero into this
+	 * collector's zero count buffer, unless it is already in the table.
+	 *
+	 * @param object The object whose count is zero
+	 */
+	@Inline
+	public final void enterZCT(ObjectReference object) {
+		if (Space.isInSpace(RefCount.RC_DESC, object) && RefCountHeader.attemptToEnterZCT(object)) {
+			zct.push(object);
+		}
+	}
+
+	/****************************************************************************
+	 * Miscellaneous
+	 */
+
+	/**
+	 * Start a collection, or resume the one whose concurrent phase has
+	 * completed or been interrupted.
+	 */
 	@Override
 	public void collect() {
-		Phase.beginNewPhaseStack(Phase.scheduleComplex(global().collection));
-				super.collect();
+		if (!Phase.isPhaseStackEmpty()) {
+			Phase.continuePhaseStack();
+		} else {
+			Phase.beginNewPhaseStack(Phase.scheduleComplex(global().collection));
+		}
 	}
-	//
-	//
-	//	/** @return The active global plan as an <code>MS</code> instance. */
+
+	/** @return The active global plan as a <code>RefCount</code> instance. */
 	@Inline
 	private static RefCount global() {
 		return (RefCount) VM.activePlan.global();
 	}
-	public static CountZeroTable getWrapper(){
-		return ZCT_wrapper;
-	}
 	@Override
 	public TraceLocal getCurrentTrace() {
 		return rctl;
-//		return super.getCurrentTrace();
 	}
 
 }
+
+/**
+ * Decides the fate of each zero count table entry at the end of a
+ * collection: entries whose count has become non-zero leave the table,
+ * revived entries stay for the next collection, and all others are
+ * handed to the free buffer.
+ */
+@Uninterruptible
+final class ZCTSweeper extends CountZeroTable.Sweeper {
+	private final RefCountFreeBuffer freeBuffer;
+
+	ZCTSweeper(RefCountFreeBuffer freeBuffer) {
+		this.freeBuffer = freeBuffer;
+	}
+
+	@Override
+	public boolean sweepEntry(ObjectReference object, boolean revived) {
+		if (RefCountHeader.isLiveRC(object)) {
+			RefCountHeader.leaveZCT(object);
+			return false;
+		}
+		/* The root flag also covers entries added after the root scan */
+		if (revived || RefCountHeader.isRoot(object)) {
+			return true;
+		}
+		freeBuffer.push(object);
+		return false;
+	}
+}
@@ -15,14 +15,7 @@ package org.mmtk.plan.tum.refcount;
 import static org.mmtk.policy.SegregatedFreeListSpace.MAX_FREELIST_OBJECT_BYTES;
 
 import org.mmtk.plan.StopTheWorldConstraints;
-
-
-
-import org.mmtk.policy.MarkSweepSpace;
-import org.mmtk.policy.SegregatedFreeListSpace;
-
 import org.vmmagic.pragma.*;
-import org.vmmagic.unboxed.ObjectReference;
 
 /**
  * This class and its subclasses communicate to the host VM/Runtime
@@ -32,16 +25,17 @@ import org.vmmagic.unboxed.ObjectReference;
  */
 @Uninterruptible
 public class RefCountConstraints extends StopTheWorldConstraints {
+	@Override
+	public boolean needsConcurrentWorkers() { return true; }
 	@Override
 	public int gcHeaderBits() { return RefCountHeader.GLOBAL_GC_BITS_REQUIRED; }
-//	public int gcHeaderBits() { return MarkSweepSpace.LOCAL_GC_BITS_REQUIRED; }
 	@Override
 	public int gcHeaderWords() { return RefCountHeader.GC_HEADER_WORDS_REQUIRED; }
 	@Override
 	public boolean needsObjectReferenceWriteBarrier() { return true; }
+	/* Statics are scanned as roots, so their stores need no counting */
 	@Override
-	public boolean needsObjectReferenceNonHeapWriteBarrier() { return true;
-	}
+	public boolean needsObjectReferenceNonHeapWriteBarrier() { return false; }
 	@Override
 	  public int maxNonLOSDefaultAllocBytes() { return MAX_FREELIST_OBJECT_BYTES; }
 
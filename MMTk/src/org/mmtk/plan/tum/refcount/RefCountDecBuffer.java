@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceBuffer;
+import org.mmtk.utility.deque.SharedDeque;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * The mutator's decrement buffer.  When an object is logged by the
+ * coalescing write barrier its referents are pushed here, recording the
+ * snapshot of its fields whose counts are to be decremented at the next
+ * collection.
+ */
+@Uninterruptible
+public final class RefCountDecBuffer extends ObjectReferenceBuffer {
+
+	/**
+	 * Constructor
+	 *
+	 * @param queue The shared deque that is used.
+	 */
+	public RefCountDecBuffer(SharedDeque queue) {
+		super("dec", queue);
+	}
+
+	/**
+	 * Buffer a referent of the object being logged.  Only objects in the
+	 * reference counted space have counts; a nursery referent was never
+	 * counted, as it is counted only once promoted.
+	 *
+	 * @param object The referent to process.
+	 */
+	@Inline
+	protected void process(ObjectReference object) {
+		if (Space.isInSpace(RefCount.RC_DESC, object)) {
+			push(object);
+		}
+	}
+}
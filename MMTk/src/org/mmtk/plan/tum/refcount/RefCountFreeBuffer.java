@@ -0,0 +1,92 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceBuffer;
+import org.mmtk.utility.deque.SharedDeque;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * The work list of dead objects waiting to be freed.<p>
+ *
+ * Freeing an object decrements each of its children.  A child whose
+ * count drops to zero is pushed onto this buffer in turn, so arbitrarily
+ * deep structures are freed iteratively rather than recursively.  A
+ * child that is referenced from the roots is entered into the zero
+ * count table instead, and one that is already in the table is left to
+ * the table.  A child that stays alive is buffered as a possible cycle
+ * root.<p>
+ *
+ * A dead object that is itself buffered as a cycle candidate is not
+ * freed here, as the candidate buffer still refers to it; its children
+ * are released and it is colored white, which outside a cycle
+ * collection marks it as dead.  The cycle collector frees it when it
+ * leaves the buffer.
+ */
+@Uninterruptible
+public final class RefCountFreeBuffer extends ObjectReferenceBuffer {
+
+	private final RefCountCollector collector;
+
+	/**
+	 * Constructor
+	 *
+	 * @param queue The shared deque that is used.
+	 * @param collector The collector owning this buffer
+	 */
+	public RefCountFreeBuffer(SharedDeque queue, RefCountCollector collector) {
+		super("free", queue);
+		this.collector = collector;
+	}
+
+	/**
+	 * Decrement a child of an object being freed.
+	 *
+	 * @param object The child to process.
+	 */
+	@Inline
+	protected void process(ObjectReference object) {
+		if (!RefCount.isRefCountObject(object)) return;
+		collector.stats.countDecrement();
+		int result = RefCountHeader.decRC(object);
+		if (result == RefCountHeader.DEC_ALIVE) {
+			collector.possibleCycleRoot(object);
+		} else if (result == RefCountHeader.DEC_KILL && Space.isInSpace(RefCount.RC_DESC, object)) {
+			if (RefCountHeader.isRoot(object)) {
+				collector.enterZCT(object);
+			} else if (!RefCountHeader.isInZCT(object)) {
+				push(object);
+			}
+		}
+	}
+
+	/**
+	 * Free an object, decrementing its children first.
+	 *
+	 * @param object The dead object
+	 */
+	@Inline
+	public void free(ObjectReference object) {
+		processChildren(object);
+		if (RefCountHeader.isBuffered(object)) {
+			if (RefCountHeader.isInZCT(object)) RefCountHeader.leaveZCT(object);
+			RefCountHeader.setColor(object, RefCountHeader.WHITE);
+		} else {
+			collector.stats.countFreed(object);
+			RefCount.rcSpace.free(object);
+		}
+	}
+}
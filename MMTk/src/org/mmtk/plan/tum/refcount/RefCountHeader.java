@@ -27,6 +27,81 @@ public class RefCountHeader implements Constants {
   public static final int GLOBAL_GC_BITS_REQUIRED = 2;
   public static final int GC_HEADER_WORDS_REQUIRED = 1;
 
+  /****************************************************************************
+   * Object logging for the coalescing write barrier.  The state lives in
+   * the available bits of the status word and applies to *all* objects.
+   */
+
+  /* Mask bits to signify the start/finish of logging an object */
+  public static final int      LOG_BIT  = 0;
+  public static final Word       LOGGED = Word.zero();                          //...00000
+  public static final Word    UNLOGGED  = Word.one();                           //...00001
+  public static final Word BEING_LOGGED = Word.one().lsh(2).minus(Word.one());  //...00011
+  public static final Word LOGGING_MASK = LOGGED.or(UNLOGGED).or(BEING_LOGGED); //...00011
+
+  /**
+   * Return true if <code>object</code> is yet to be logged in the
+   * current epoch.
+   *
+   * @param object The object in question
+   * @return <code>true</code> if <code>object</code> needs to be logged.
+   */
+  @Inline
+  public static boolean logRequired(ObjectReference object) {
+    Word value = VM.objectModel.readAvailableBitsWord(object);
+    return value.and(LOGGING_MASK).EQ(UNLOGGED);
+  }
+
+  /**
+   * Attempt to log <code>object</code>.  Returns <code>true</code> if
+   * we are to log the object and <code>false</code> if we lost the race
+   * to log it.  A winner leaves the object <code>BEING_LOGGED</code>,
+   * and must make it <code>LOGGED</code> once its snapshot is taken.
+   *
+   * @see #makeLogged(ObjectReference)
+   * @param object The object in question
+   * @return <code>true</code> if the race to log <code>object</code>
+   * was won.
+   */
+  @Inline
+  public static boolean attemptToLog(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = VM.objectModel.prepareAvailableBits(object);
+      if (oldValue.and(LOGGING_MASK).EQ(LOGGED)) {
+        return false;
+      }
+    } while ((oldValue.and(LOGGING_MASK).EQ(BEING_LOGGED)) ||
+             !VM.objectModel.attemptAvailableBits(object, oldValue, oldValue.or(BEING_LOGGED)));
+    return true;
+  }
+
+  /**
+   * Signify completion of logging <code>object</code>, leaving it in
+   * the <code>LOGGED</code> state.
+   *
+   * @param object The object whose state is to be changed.
+   */
+  @Inline
+  public static void makeLogged(ObjectReference object) {
+    Word value = VM.objectModel.readAvailableBitsWord(object);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(value.and(LOGGING_MASK).NE(LOGGED));
+    VM.objectModel.writeAvailableBitsWord(object, value.and(LOGGING_MASK.not()));
+  }
+
+  /**
+   * Change <code>object</code>'s state to <code>UNLOGGED</code>, starting
+   * a new epoch for it.
+   *
+   * @param object The object whose state is to be changed.
+   */
+  @Inline
+  public static void makeUnlogged(ObjectReference object) {
+    Word value = VM.objectModel.readAvailableBitsWord(object);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(value.and(LOGGING_MASK).EQ(LOGGED));
+    VM.objectModel.writeAvailableBitsWord(object, value.or(UNLOGGED));
+  }
+
 
   /************************************************************************
    * RC header word
@@ -35,24 +110,47 @@ public class RefCountHeader implements Constants {
   /* Header offset */
   public static final Offset RC_HEADER_OFFSET = VM.objectModel.GC_HEADER_OFFSET();
 
-  /* Reserved to allow alignment hole filling to work */
-//  public static final int RESERVED_ALIGN_BIT = 0;
-  
   /* color bits */
   public static final int COLOR_BIT_1 = 0;
   public static final int COLOR_BIT_2 = 1;
   public static final Word COLOR_BIT_MASK = Word.one().lsh(2).minus(Word.one()); // "4-1" : ...011
 
+  /* Colors used by trial deletion (Bacon and Rajan) */
+  public static final Word BLACK = Word.zero();                    // in use
+  public static final Word GRAY = Word.one().lsh(COLOR_BIT_1);     // possible member of a cycle
+  public static final Word WHITE = Word.one().lsh(COLOR_BIT_2);    // member of a garbage cycle
+  public static final Word PURPLE = COLOR_BIT_MASK;                // possible root of a cycle
+
+  /* Set while the object has an entry in the zero count table */
+  public static final int ZCT_BIT = 2;
+  public static final Word ZCT_BIT_MASK = Word.one().lsh(ZCT_BIT);
+
+  /* Set during a collection on objects referenced from the roots */
+  public static final int ROOT_BIT = 3;
+  public static final Word ROOT_BIT_MASK = Word.one().lsh(ROOT_BIT);
+
+  /* Set while the object is in the buffer of possible cycle roots */
+  public static final int BUFFERED_BIT = 4;
+  public static final Word BUFFERED_BIT_MASK = Word.one().lsh(BUFFERED_BIT);
+
+  /* The mark bit used for backup tracing */
+  public static final int MARK_BIT = 5;
+  public static final Word MARK_BIT_MASK = Word.one().lsh(MARK_BIT);
+
+  public static final int BITS_USED = 6;
+
   /* Reference counting increments */
-  public static final int INCREMENT_SHIFT = 0;
+  public static final int INCREMENT_SHIFT = BITS_USED;
   public static final Word INCREMENT = Word.one().lsh(INCREMENT_SHIFT);
-  // TODO: wieso nicht Word.zero().not(); als limit ?
   public static final Word INCREMENT_LIMIT = Word.one().lsh(BITS_IN_ADDRESS-1).not();
   public static final Word LIVE_THRESHOLD = INCREMENT;
+  /* The count field, above the flag bits */
+  public static final Word COUNT_MASK = Word.max().lsh(INCREMENT_SHIFT);
 
   /* Return values from decRC */
   public static final int DEC_KILL = 0;
   public static final int DEC_ALIVE = 1;
+  public static final int DEC_ZERO = 2;
 
   /**
    * Perform any required initialization of the GC portion of the header.
@@ -66,6 +164,110 @@ public class RefCountHeader implements Constants {
     object.toAddress().store(initialValue, RC_HEADER_OFFSET);
   }
 
+  /**
+   * Initialize the GC portion of the header of a newly allocated
+   * object.  Under deferred reference counting references from the
+   * stacks are not counted, so a new object starts with a count of
+   * zero and is entered into the zero count table by its allocator.
+   *
+   * @param object the object
+   */
+  @Inline
+  public static void initializeHeaderInZCT(ObjectReference object) {
+    object.toAddress().store(ZCT_BIT_MASK, RC_HEADER_OFFSET);
+  }
+
+  /**
+   * Return true if the object currently has an entry in the zero
+   * count table.
+   *
+   * @param object The object in question
+   * @return True if the object is in the zero count table
+   */
+  @Inline
+  public static boolean isInZCT(ObjectReference object) {
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(ZCT_BIT_MASK).EQ(ZCT_BIT_MASK);
+  }
+
+  /**
+   * Attempt to atomically flag the object as being in the zero count
+   * table.  Return true if the flag was set by this call, in which case
+   * the caller is responsible for adding the object to the table.
+   *
+   * @param object The object to be entered into the zero count table
+   * @return True if the caller won the race to enter the object
+   */
+  @Inline
+  public static boolean attemptToEnterZCT(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (oldValue.and(ZCT_BIT_MASK).EQ(ZCT_BIT_MASK)) {
+        return false;
+      }
+    } while (!object.toAddress().attempt(oldValue, oldValue.or(ZCT_BIT_MASK), RC_HEADER_OFFSET));
+    return true;
+  }
+
+  /**
+   * Clear the zero count table flag of an object whose entry has been
+   * dropped from the table.
+   *
+   * @param object The object that is leaving the zero count table
+   */
+  @Inline
+  public static void leaveZCT(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(oldValue.and(ZCT_BIT_MASK).EQ(ZCT_BIT_MASK));
+    } while (!object.toAddress().attempt(oldValue, oldValue.and(ZCT_BIT_MASK.not()), RC_HEADER_OFFSET));
+  }
+
+  /**
+   * Return true if the current root scan found a reference to the
+   * object.
+   *
+   * @param object The object in question
+   * @return True if the object is referenced from the roots
+   */
+  @Inline
+  public static boolean isRoot(ObjectReference object) {
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(ROOT_BIT_MASK).EQ(ROOT_BIT_MASK);
+  }
+
+  /**
+   * Attempt to atomically flag the object as referenced from the roots.
+   * Return true if the flag was set by this call, in which case the
+   * caller is responsible for clearing it at the end of the collection.
+   *
+   * @param object The object referenced from the roots
+   * @return True if the caller won the race to flag the object
+   */
+  @Inline
+  public static boolean attemptToMarkRoot(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (oldValue.and(ROOT_BIT_MASK).EQ(ROOT_BIT_MASK)) {
+        return false;
+      }
+    } while (!object.toAddress().attempt(oldValue, oldValue.or(ROOT_BIT_MASK), RC_HEADER_OFFSET));
+    return true;
+  }
+
+  /**
+   * Clear the root flag of an object at the end of a collection, when
+   * no other thread is updating its header.
+   *
+   * @param object The object flagged by the root scan
+   */
+  @Inline
+  public static void clearRoot(ObjectReference object) {
+    Word value = object.toAddress().loadWord(RC_HEADER_OFFSET);
+    object.toAddress().store(value.and(ROOT_BIT_MASK.not()), RC_HEADER_OFFSET);
+  }
+
   /**
    * Return true if given object is live
    *
@@ -75,7 +277,7 @@ public class RefCountHeader implements Constants {
   @Inline
   @Uninterruptible
   public static boolean isLiveRC(ObjectReference object) {
-    return object.toAddress().loadWord(RC_HEADER_OFFSET).GE(LIVE_THRESHOLD);
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(COUNT_MASK).GE(LIVE_THRESHOLD);
   }
 
   /**
@@ -87,11 +289,11 @@ public class RefCountHeader implements Constants {
   @Inline
   @Uninterruptible
   public static int getRC(ObjectReference object) {
-    return object.toAddress().loadWord(RC_HEADER_OFFSET).rshl(INCREMENT_SHIFT).toInt();
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(COUNT_MASK).rshl(INCREMENT_SHIFT).toInt();
   }
 
   /**
-   * Increment the reference count of an object.
+   * Increment the reference count of an object, coloring it black.
    *
    * @param object The object whose reference count is to be incremented.
    */
@@ -101,7 +303,7 @@ public class RefCountHeader implements Constants {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(RefCount.isRefCountObject(object));
     do {
       oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
-      newValue = oldValue.plus(INCREMENT);
+      newValue = oldValue.plus(INCREMENT).and(COLOR_BIT_MASK.not());
       if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(newValue.LE(INCREMENT_LIMIT));
     } while (!object.toAddress().attempt(oldValue, newValue, RC_HEADER_OFFSET));
   }
@@ -109,11 +311,15 @@ public class RefCountHeader implements Constants {
   /**
    * Decrement the reference count of an object.  Return either
    * <code>DEC_KILL</code> if the count went to zero,
-   * <code>DEC_ALIVE</code> if the count did not go to zero.
+   * <code>DEC_ALIVE</code> if the count did not go to zero, in which
+   * case the object is colored purple as a possible cycle root.  A
+   * count that is already zero is left alone, rather than borrowing from
+   * the flag bits below it, and reported as <code>DEC_ZERO</code>.
    *
    * @param object The object whose RC is to be decremented.
    * @return <code>DEC_KILL</code> if the count went to zero,
-   * <code>DEC_ALIVE</code> if the count did not go to zero.
+   * <code>DEC_ALIVE</code> if the count did not go to zero,
+   * <code>DEC_ZERO</code> if the count was already zero.
    */
   @Inline
   @Uninterruptible
@@ -122,37 +328,144 @@ public class RefCountHeader implements Constants {
     int rtn;
     if (VM.VERIFY_ASSERTIONS) {
       VM.assertions._assert(RefCount.isRefCountObject(object));
-//      VM.assertions._assert(isLiveRC(object));
     }
     do {
       oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (oldValue.and(COUNT_MASK).isZero()) return DEC_ZERO;
       newValue = oldValue.minus(INCREMENT);
-      if (newValue.LT(LIVE_THRESHOLD)) {
+      if (newValue.and(COUNT_MASK).LT(LIVE_THRESHOLD)) {
         rtn = DEC_KILL;
       } else {
         rtn = DEC_ALIVE;
+        newValue = newValue.or(PURPLE);
       }
     } while (!object.toAddress().attempt(oldValue, newValue, RC_HEADER_OFFSET));
     return rtn;
   }
 
-public static int nastyDecRC(ObjectReference object) {
-	 Word oldValue, newValue;
-	    int rtn;
-	    if (VM.VERIFY_ASSERTIONS) {
-	      VM.assertions._assert(RefCount.isRefCountObject(object));
-	     // VM.assertions._assert(isLiveRC(object));
-	    }
-	    do {
-	      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
-	      newValue = oldValue.minus(INCREMENT);
-	      if (newValue.LT(LIVE_THRESHOLD)) {
-	        rtn = DEC_KILL;
-	      } else {
-	        rtn = DEC_ALIVE;
-	      }
-	    } while (!object.toAddress().attempt(oldValue, newValue, RC_HEADER_OFFSET));
-	    return rtn;
-	
-}
+  /****************************************************************************
+   * Trial deletion.  These run on a single collector thread, so the
+   * header is updated without atomic operations.
+   */
+
+  /**
+   * @param object The object in question
+   * @return The trial deletion color of the object
+   */
+  @Inline
+  public static Word getColor(ObjectReference object) {
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(COLOR_BIT_MASK);
+  }
+
+  /**
+   * @param object The object in question
+   * @param color The new trial deletion color of the object
+   */
+  @Inline
+  public static void setColor(ObjectReference object, Word color) {
+    Word value = object.toAddress().loadWord(RC_HEADER_OFFSET);
+    object.toAddress().store(value.and(COLOR_BIT_MASK.not()).or(color), RC_HEADER_OFFSET);
+  }
+
+  /**
+   * Increment the count of an object without changing its color.
+   *
+   * @param object The object whose count is restored
+   */
+  @Inline
+  public static void unsyncIncRC(ObjectReference object) {
+    Word value = object.toAddress().loadWord(RC_HEADER_OFFSET);
+    object.toAddress().store(value.plus(INCREMENT), RC_HEADER_OFFSET);
+  }
+
+  /**
+   * Decrement the count of an object without changing its color.
+   *
+   * @param object The object whose count is trial-decremented
+   */
+  @Inline
+  public static void unsyncDecRC(ObjectReference object) {
+    Word value = object.toAddress().loadWord(RC_HEADER_OFFSET);
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(value.and(COUNT_MASK).GE(LIVE_THRESHOLD));
+    object.toAddress().store(value.minus(INCREMENT), RC_HEADER_OFFSET);
+  }
+
+  /**
+   * @param object The object in question
+   * @return True if the object is in the buffer of possible cycle roots
+   */
+  @Inline
+  public static boolean isBuffered(ObjectReference object) {
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(BUFFERED_BIT_MASK).EQ(BUFFERED_BIT_MASK);
+  }
+
+  /**
+   * Attempt to atomically flag the object as buffered as a possible
+   * cycle root.  Return true if the flag was set by this call, in which
+   * case the caller is responsible for buffering the object.
+   *
+   * @param object The possible cycle root
+   * @return True if the caller won the race to buffer the object
+   */
+  @Inline
+  public static boolean attemptToBuffer(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (oldValue.and(BUFFERED_BIT_MASK).EQ(BUFFERED_BIT_MASK)) {
+        return false;
+      }
+    } while (!object.toAddress().attempt(oldValue, oldValue.or(BUFFERED_BIT_MASK), RC_HEADER_OFFSET));
+    return true;
+  }
+
+  /**
+   * Clear the buffered flag of an object leaving the buffer of possible
+   * cycle roots.
+   *
+   * @param object The object leaving the buffer
+   */
+  @Inline
+  public static void clearBuffered(ObjectReference object) {
+    Word value = object.toAddress().loadWord(RC_HEADER_OFFSET);
+    object.toAddress().store(value.and(BUFFERED_BIT_MASK.not()), RC_HEADER_OFFSET);
+  }
+
+  /****************************************************************************
+   * Backup tracing
+   */
+
+  /**
+   * Has this object been marked by the most recent backup trace.
+   */
+  @Inline
+  public static boolean isMarked(ObjectReference object) {
+    return object.toAddress().loadWord(RC_HEADER_OFFSET).and(MARK_BIT_MASK).EQ(MARK_BIT_MASK);
+  }
+
+  /**
+   * Clear the mark of an object after a backup trace.
+   */
+  @Inline
+  public static void clearMarked(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+    } while (!object.toAddress().attempt(oldValue, oldValue.and(MARK_BIT_MASK.not()), RC_HEADER_OFFSET));
+  }
+
+  /**
+   * Attempt to atomically mark this object. Return true if the mark was performed.
+   */
+  @Inline
+  public static boolean testAndMark(ObjectReference object) {
+    Word oldValue;
+    do {
+      oldValue = object.toAddress().prepareWord(RC_HEADER_OFFSET);
+      if (oldValue.and(MARK_BIT_MASK).EQ(MARK_BIT_MASK)) {
+        return false;
+      }
+    } while (!object.toAddress().attempt(oldValue, oldValue.or(MARK_BIT_MASK), RC_HEADER_OFFSET));
+    return true;
+  }
 }
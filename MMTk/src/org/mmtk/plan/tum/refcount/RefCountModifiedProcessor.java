@@ -0,0 +1,56 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.Space;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Increments the current referents of an object logged by the
+ * coalescing write barrier (or newly allocated) since the last
+ * collection.
+ */
+@Uninterruptible
+public final class RefCountModifiedProcessor extends TransitiveClosure {
+
+	private final RefCountStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param stats The event counts of the owning collector
+	 */
+	public RefCountModifiedProcessor(RefCountStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Increment the referent of a field of a modified object.
+	 *
+	 * @param source The modified object.
+	 * @param slot The location containing the object reference.
+	 */
+	@Inline
+	@Override
+	public void processEdge(ObjectReference source, Address slot) {
+		ObjectReference object = slot.loadObjectReference();
+		if (Space.isInSpace(RefCount.RC_DESC, object)) {
+			stats.countIncrement();
+			RefCountHeader.incRC(object);
+		}
+	}
+}
@@ -20,27 +20,28 @@ import org.mmtk.policy.ExplicitFreeListLocal;
 import org.mmtk.policy.ExplicitFreeListSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.DoublyLinkedList;
-import org.mmtk.utility.Log;
 import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.deque.AddressPairDeque;
 import org.mmtk.utility.deque.ObjectReferenceDeque;
 import org.mmtk.utility.sanitychecker.SanityDataTable;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.NoInline;
 import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
-import org.vmmagic.unboxed.AddressArray;
 import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Offset;
 import org.vmmagic.unboxed.Word;
 
 /**
  * This class implements <i>per-mutator thread</i> behavior and state for the
- * <i>MS</i> plan, which implements a full-heap mark-sweep collector.
+ * <i>RefCount</i> plan, which implements a deferred reference counting
+ * collector.
  * <p>
  * 
- * Specifically, this class defines <i>MS</i> mutator-time allocation and
- * per-mutator thread collection semantics (flushing and restoring per-mutator
- * allocator state).
+ * Specifically, this class defines <i>RefCount</i> mutator-time allocation,
+ * the coalescing write barrier, and per-mutator thread collection semantics
+ * (flushing and restoring per-mutator allocator state and buffers).
  * <p>
  * 
  * @see RefCount
@@ -51,20 +52,22 @@ import org.vmmagic.unboxed.Word;
 @Uninterruptible
 public class RefCountMutator extends StopTheWorldMutator {
 
-	public static ObjectReferenceDeque ZCT = new ObjectReferenceDeque("zct", RefCount.zcts);
-	public static AddressArray addrarr;
 	/****************************************************************************
 	 * Instance fields
 	 */
 	protected ExplicitFreeListLocal freelist = new ExplicitFreeListLocal(RefCount.rcSpace);
-//	private static final CamlLightTrace clt = new CamlLightTrace();
+	private final ObjectReferenceDeque modBuffer = new ObjectReferenceDeque("mod", RefCount.modPool);
+	private final ObjectReferenceDeque incBuffer = new ObjectReferenceDeque("inc", RefCount.incPool);
+	private final RefCountDecBuffer decBuffer = new RefCountDecBuffer(RefCount.decPool);
+	private final ObjectReferenceDeque zct = new ObjectReferenceDeque("zct", RefCount.zcts);
+
 	/****************************************************************************
 	 * Mutator-time allocation
 	 */
 
 	/**
 	 * Allocate memory for an object. This class handles the default allocator
-	 * from the mark sweep space, and delegates everything else to the
+	 * from the reference counted space, and delegates everything else to the
 	 * superclass.
 	 * 
 	 * @param bytes
@@ -75,13 +78,11 @@ public class RefCountMutator extends StopTheWorldMutator {
 	 *            Offset associated with the alignment.
 	 * @param allocator
 	 *            The allocator associated with this request.
-	 * @return The low address of the allocated memory.p
+	 * @return The low address of the allocated memory.
 	 */
 	@Override
 	public Address alloc(int bytes, int align, int offset, int allocator,
 			int site) {
-		//		Log.writeln(RefCount.freeMemory().toInt()/(1024*1024));
-		//		System.exit(42);
 		if (allocator == RefCount.ALLOC_DEFAULT) {
 			return freelist.alloc(bytes, align, offset);			
 		}		
@@ -92,14 +93,14 @@ public class RefCountMutator extends StopTheWorldMutator {
 
 	/**
 	 * Perform post-allocation actions. Initialize the object header for objects
-	 * in the mark-sweep space, and delegate to the superclass for other
+	 * in the reference counted space, and delegate to the superclass for other
 	 * objects.
 	 * 
 	 * @param ref
 	 *            The newly allocated object
 	 * @param typeRef
 	 *            the type reference for the instance being created
-	 * @param bytes	Log.writeln(
+	 * @param bytes
 	 *            The size of the space to be allocated (in bytes)
 	 * @param allocator
 	 *            The allocator number to be used for this allocation
@@ -108,13 +109,14 @@ public class RefCountMutator extends StopTheWorldMutator {
 	@Override
 	public void postAlloc(ObjectReference ref, ObjectReference typeRef,
 			int bytes, int allocator) {
-		//		Log.writeln("postalloc");
-		//		if(ref!=null)Log.writeln("ref:\t"+ref+" "+typeRef);
-		//		if(typeRef!=null)Log.writeln("typeRef:\t"+typeRef.toAddress().toInt());
 		switch (allocator) {
 		case RefCount.ALLOC_DEFAULT:
-			RefCountHeader.initializeHeader(ref, false);
-			ExplicitFreeListSpace.unsyncSetLiveBit(ref);
+			/* New objects are born logged: their initial referents are counted at the next collection */
+			modBuffer.push(ref);
+			RefCountHeader.initializeHeaderInZCT(ref);
+			/* Dead neighbours may be freed concurrently, clearing bits in the same word */
+			ExplicitFreeListSpace.testAndSetLiveBit(VM.objectModel.refToAddress(ref));
+			zct.push(ref);
 			return;
 		}
 		super.postAlloc(ref, typeRef, bytes, allocator);
@@ -165,16 +167,16 @@ public class RefCountMutator extends StopTheWorldMutator {
 	 * @param mode
 	 *            The context in which the store occurred
 	 */
-	//	@Inline
 	@Inline
 	public void objectReferenceWrite(ObjectReference src, Address slot,
 			ObjectReference tgt, Word metaDataA, Word metaDataB, int mode) {
-
-		ObjectReference old = slot.loadObjectReference();
-//		Log.writeln("oRW_Heap()");
-		writeBarrier(old, tgt);
-
-
+		if (Space.isInSpace(RefCount.RC_DESC, src)) {
+			if (RefCountHeader.logRequired(src)) {
+				coalescingWriteBarrierSlow(src);
+			}
+		} else {
+			unloggedStore(src, slot, slot.loadObjectReference(), tgt);
+		}
 		VM.barriers.objectReferenceWrite(src, tgt, metaDataA, metaDataB, mode);
 	}
 	/****************************************************************************
@@ -183,7 +185,6 @@ public class RefCountMutator extends StopTheWorldMutator {
 
 	@Override
 	public void deinitMutator() {
-		// TODO Auto-generated method stub
 		super.deinitMutator();
 	}
 
@@ -191,47 +192,87 @@ public class RefCountMutator extends StopTheWorldMutator {
 	public boolean objectReferenceTryCompareAndSwap(ObjectReference src,
 			Address slot, ObjectReference old, ObjectReference tgt,
 			Word metaDataA, Word metaDataB, int mode) {
-//		Log.writeln("oRTCaS()");
-		writeBarrier(old, tgt);
+		if (!Space.isInSpace(RefCount.RC_DESC, src)) {
+			if (!VM.barriers.objectReferenceTryCompareAndSwap(src, old, tgt, metaDataA, metaDataB, mode)) {
+				return false;
+			}
+			unloggedStore(src, slot, old, tgt);
+			return true;
+		}
+		if (RefCountHeader.logRequired(src)) {
+			coalescingWriteBarrierSlow(src);
+		}
 		return VM.barriers.objectReferenceTryCompareAndSwap(src, old, tgt, metaDataA,
 				metaDataB, mode);
 	}
 
-
+	/**
+	 * A number of references are about to be copied from object
+	 * <code>src</code> to object <code>dst</code> (as in an array copy),
+	 * so <code>dst</code> is the mutated object.
+	 *
+	 * @param src The source of the values to be copied
+	 * @param srcOffset The offset of the first source address
+	 * @param dst The mutated object, i.e. the destination of the copy.
+	 * @param dstOffset The offset of the first destination address
+	 * @param bytes The size of the region being copied, in bytes.
+	 * @return False: the copy is left to the caller.
+	 */
 	@Inline
-	@Uninterruptible
-	public static final void delete(ObjectReference obj) {
-		if (VM.VERIFY_ASSERTIONS) {
-			VM.assertions._assert(RefCount.isRefCountObject(obj));
-			//VM.assertions._assert(CamlLightHeader.isLiveRC(obj));
+	public boolean objectReferenceBulkCopy(ObjectReference src, Offset srcOffset,
+			ObjectReference dst, Offset dstOffset, int bytes) {
+		if (Space.isInSpace(RefCount.RC_DESC, dst)) {
+			if (RefCountHeader.logRequired(dst)) {
+				coalescingWriteBarrierSlow(dst);
+			}
+			return false;
 		}
-		if(RefCountHeader.decRC(obj) == RefCountHeader.DEC_KILL) {
-			ZCT.push(obj);
-			RefCount.incCount();
-			Log.write("deleting object ");
-			Log.writeln(obj);
-//			VM.scanning.scanObject(clt, obj);
-			//CamlLight.camlSpace.free(obj);
-//			VM.scanning.scanObject(RefCountTraceLocal, obj);
-			RefCount.rcSpace.free(obj);
-//			RefCount.rcSpace.prepare();	
-//			RefCount.rcSpace.release();	
+		Address from = src.toAddress().plus(srcOffset);
+		Address to = dst.toAddress().plus(dstOffset);
+		for (int i = 0; i < bytes; i += BYTES_IN_ADDRESS) {
+			unloggedStore(dst, to.plus(i), to.plus(i).loadObjectReference(), from.plus(i).loadObjectReference());
 		}
+		return false;
 	}
+
+	/**
+	 * Buffer the count changes of a store into an object outside the
+	 * reference counted space.  Such objects cannot be logged, since the
+	 * available bits of their headers belong to their own policies, so
+	 * every store to them is buffered: the new target is incremented and
+	 * the old one decremented at the next collection.
+	 *
+	 * @param src The object being mutated
+	 * @param slot The location being stored to
+	 * @param old The reference being overwritten
+	 * @param tgt The reference being stored
+	 */
 	@Inline
-	private void writeBarrier(ObjectReference old, ObjectReference tgt) {
-//		Log.writeln(RefCount.freeMemory().toInt()/(1024f*1024f));	
-//		Log.writeln(RefCount.freeMemory().toInt());	
-//		Log.writeln("writeBarrier(");
-//		Log.write(old);
-//		Log.write(",");
-//		Log.write(tgt);
-//		log.writeln(")");
-		if (tgt != null && !tgt.isNull() && RefCount.isRefCountObject(tgt))
-			RefCountHeader.incRC(tgt);
+	protected void unloggedStore(ObjectReference src, Address slot, ObjectReference old, ObjectReference tgt) {
+		if (Space.isInSpace(RefCount.RC_DESC, old)) {
+			decBuffer.push(old);
+		}
+		if (!tgt.isNull()) {
+			incBuffer.push(tgt);
+		}
+	}
 
-		if (old != null && !old.isNull() && RefCount.isRefCountObject(old)) {
-			delete(old);
+	/**
+	 * Slow path of the coalescing write barrier, taken on the first
+	 * store to an object since the last collection.  No counts are
+	 * touched here: the object is buffered, so that its referents at the
+	 * next collection are incremented, and its current referents are
+	 * buffered for decrement.  Later stores to the object in the same
+	 * epoch take the fast path.
+	 *
+	 * @param src The object being mutated
+	 */
+	@NoInline
+	private void coalescingWriteBarrierSlow(ObjectReference src) {
+		if (RefCountHeader.attemptToLog(src)) {
+			modBuffer.push(src);
+			decBuffer.processChildren(src);
+			RefCountHeader.makeLogged(src);
 		}
 	}
 
@@ -246,21 +287,26 @@ public class RefCountMutator extends StopTheWorldMutator {
 	@Inline
 	@Override
 	public void collectionPhase(short phaseId, boolean primary) {
-		//		Log.writeln("RefCountMutator.collectionPhase()");
 		if (phaseId == RefCount.PREPARE) {
-
 			freelist.prepare();
 			return;
 		}
 		if (phaseId == RefCount.RELEASE) {
 			freelist.release();
 			freelist.flush();
-//			super.collectionPhase(phaseId, primary);
+			return;
+		}
+		if (phaseId == RefCount.PROCESS_MODBUFFER) {
+			modBuffer.flushLocal();
+			incBuffer.flushLocal();
+			return;
+		}
+		if (phaseId == RefCount.PROCESS_DECBUFFER) {
+			decBuffer.flushLocal();
 			return;
 		}
 		if (phaseId == RefCount.PREPARE_ZCT) {
-			Log.writeln("MUTATOR_PREPARE_ZCT");
-			ZCT.flushLocal();
+			zct.flushLocal();
 			return;
 		}
 		
@@ -276,4 +322,16 @@ public class RefCountMutator extends StopTheWorldMutator {
 		super.flush();
 		freelist.flush();
 	}
+
+	/**
+	 * Flush the per-mutator modified, decrement and zero count buffers
+	 * into their global pools.
+	 */
+	@Override
+	public void flushRememberedSets() {
+		modBuffer.flushLocal();
+		incBuffer.flushLocal();
+		decBuffer.flushLocal();
+		zct.flushLocal();
+	}
 }
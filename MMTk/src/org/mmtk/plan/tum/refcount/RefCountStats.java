@@ -0,0 +1,117 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.utility.statistics.EventCounter;
+import org.mmtk.utility.statistics.SizeCounter;
+import org.mmtk.vm.Lock;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Reference counting event counts of one collector thread.<p>
+ *
+ * The statistics counters are not thread safe, so each collector counts
+ * locally and folds its counts into the shared counters once per
+ * collection.  The counters are reported with all other statistics
+ * through <code>Stats</code>, in plain or XML form.
+ */
+@Uninterruptible
+public final class RefCountStats {
+
+	/** Gather reference counting statistics */
+	public static final boolean GATHER_RC_STATS = true;
+
+	private static final EventCounter increments;
+	private static final EventCounter decrements;
+	private static final EventCounter revived;
+	private static final SizeCounter freed;
+	private static final SizeCounter zctSize;
+	private static final Lock lock = VM.newLock("RefCountStats");
+
+	static {
+		if (GATHER_RC_STATS) {
+			increments = new EventCounter("rcIncs");
+			decrements = new EventCounter("rcDecs");
+			revived = new EventCounter("rcRevived");
+			freed = new SizeCounter("rcFreed");
+			zctSize = new SizeCounter("rcZCT");
+		} else {
+			increments = null;
+			decrements = null;
+			revived = null;
+			freed = null;
+			zctSize = null;
+		}
+	}
+
+	private int incs;
+	private int decs;
+	private int revivals;
+	private int freedObjects;
+	private int freedBytes;
+
+	@Inline
+	public void countIncrement() {
+		if (GATHER_RC_STATS) incs++;
+	}
+
+	@Inline
+	public void countDecrement() {
+		if (GATHER_RC_STATS) decs++;
+	}
+
+	@Inline
+	public void countRevived() {
+		if (GATHER_RC_STATS) revivals++;
+	}
+
+	/**
+	 * Count an object about to be freed.
+	 *
+	 * @param object The object being freed
+	 */
+	@Inline
+	public void countFreed(ObjectReference object) {
+		if (GATHER_RC_STATS) {
+			freedObjects++;
+			freedBytes += VM.objectModel.getCurrentSize(object);
+		}
+	}
+
+	/**
+	 * Fold the local counts into the shared counters and reset them.
+	 */
+	public void flush() {
+		if (!GATHER_RC_STATS) return;
+		lock.acquire();
+		increments.inc(incs);
+		decrements.inc(decs);
+		revived.inc(revivals);
+		freed.inc(freedObjects, freedBytes);
+		lock.release();
+		incs = decs = revivals = freedObjects = freedBytes = 0;
+	}
+
+	/**
+	 * Record the size of the zero count table.  Called by a single
+	 * thread once per collection.
+	 *
+	 * @param entries The number of entries in the table
+	 */
+	public static void countZCT(int entries) {
+		if (GATHER_RC_STATS) zctSize.inc(entries);
+	}
+}
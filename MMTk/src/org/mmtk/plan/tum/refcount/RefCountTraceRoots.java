@@ -1,17 +1,18 @@
-///*
-// *  This file is part of the Jikes RVM project (http://jikesrvm.org).
-// *
-// *  This file is licensed to You under the Eclipse Public License (EPL);
-// *  You may not use this file except in compliance with the License. You
-// *  may obtain a copy of the License at
-// *
-// *      http://www.opensource.org/licenses/eclipse-1.0.php
-// *
-// *  See the COPYRIGHT.txt file distributed with this work for information
-// *  regarding copyright ownership.
-// */
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
 package org.mmtk.plan.tum.refcount;
-//
+
+import org.mmtk.plan.Plan;
 import org.mmtk.plan.Trace;
 import org.mmtk.plan.TraceLocal;
 import org.mmtk.policy.ExplicitFreeListSpace;
@@ -24,37 +25,46 @@ import org.vmmagic.pragma.Uninterruptible;
 import org.vmmagic.unboxed.Address;
 import org.vmmagic.unboxed.ObjectReference;
 
-import com.sun.xml.internal.bind.v2.schemagen.xmlschema.ExplicitGroup;
-//
-///**
-// * This class implements the thread-local functionality for a transitive
-// * closure over a mark-sweep space.
-// */
+/**
+ * This class implements the thread-local functionality of the root
+ * trace of the reference counting collector, which also performs the
+ * backup trace.
+ */
 @Uninterruptible
-public final class RefCountTraceRoots extends TraceLocal {
+public class RefCountTraceRoots extends TraceLocal {
 	/****************************************************************************
 	 * Instance fields
 	 */
+	private final ObjectReferenceDeque rootBuffer;
+	private final ObjectReferenceDeque markedBuffer;
+	private final RefCountStats stats;
 	/**
 	 * Constructor
+	 *
+	 * @param trace The global trace
+	 * @param rootBuffer Receives every object flagged as a root, so the
+	 * flag can be cleared at the end of the collection
+	 * @param markedBuffer Receives every object marked by a backup trace
+	 * @param stats The event counts of the owning collector
 	 */
-	public RefCountTraceRoots(Trace trace, ObjectReferenceDeque modBuffer) {
+	public RefCountTraceRoots(Trace trace, ObjectReferenceDeque rootBuffer, ObjectReferenceDeque markedBuffer,
+			RefCountStats stats) {
 		super(trace);
-		//		super(RefCount.SCAN_MARK, trace);
-		//		super(-1,trace);
+		this.rootBuffer = rootBuffer;
+		this.markedBuffer = markedBuffer;
+		this.stats = stats;
 	}
-	//
-	//
-	//  /****************************************************************************
-	//   * Externally visible Object processing and tracing
-	//   */
-	//
-	//  /**
-	//   * Is the specified object live?
-	//   *
-	//   * @param object The object.
-	//   * @return <code>true</code> if the object is live.
-	//   */
+
+	/****************************************************************************
+	 * Externally visible Object processing and tracing
+	 */
+
+	/**
+	 * Is the specified object live?
+	 *
+	 * @param object The object.
+	 * @return <code>true</code> if the object is live.
+	 */
 	@Override
 	public boolean isLive(ObjectReference object) {
 		if (object.isNull()) return false;
@@ -65,74 +75,73 @@ public final class RefCountTraceRoots extends TraceLocal {
 	}
 	
 
+	/**
+	 * Under deferred reference counting only the roots themselves matter:
+	 * a zero count object referenced from a root must survive this
+	 * collection, and is kept in the zero count table for the next one.
+	 * Everything reachable from it has a non-zero count through the heap.
+	 * Roots are also flagged in their header so that freeing a dead
+	 * structure does not free an object whose count drops to zero while
+	 * a root still refers to it.<p>
+	 *
+	 * During a backup trace every reachable object is marked as well.
+	 *
+	 * @param object The object to be traced.
+	 * @param root Is this a root reference?
+	 * @return The object (this collector never moves objects)
+	 */
 	@Inline
 	@Override
 	public ObjectReference traceObject(ObjectReference object, boolean root) {
-		Log.writeln("TraceObject: "+object+" "+root);
-		if (root)
-			scanObject(object);
-		else {
-		int pos = RefCountCollector.getWrapper().indexOf(object);
-		if (pos >= 0) {
-			Log.writeln("unFree");
-			ExplicitFreeListSpace.testAndSetLiveBit(object);
+		if (root && !object.isNull() && Space.isInSpace(RefCount.RC_DESC, object)) {
+			if (RefCountHeader.attemptToMarkRoot(object)) {
+				rootBuffer.push(object);
+			}
+			if (RefCountHeader.isInZCT(object) && !RefCountHeader.isLiveRC(object)) {
+				if (RefCount.zct.revive(object)) {
+					stats.countRevived();
+					if (RefCount.TRACE_RC) {
+						Log.write("[RC] revived ");
+						Log.writeln(object);
+					}
+				}
+			}
 		}
+		if (RefCount.performBackupTrace) {
+			mark(object);
 		}
-		
 		return object;
-		
-		/*if(object.isNull()||object==null)
-			return super.traceObject(object,root);
-		int pos = RefCountCollector.getWrapper().indexOf(object);
-		Log.write(object);
-		Log.write(" ");
-		Log.writeln(root);
-
-		//		if(!root){
-		//			Log.write("freeing object ");
-		//			Log.writeln(object);
-		//			RefCount.rcSpace.free(object);
-		//		}
-		if(pos>=0){
-			//			RefCount.rcSpace.free(object);
-			// revive root ZCT nodes
-			ObjectReference ref = RefCountCollector.getWrapper().get(pos);
-			ExplicitFreeListSpace.testAndSetLiveBit(ref);
-			Log.writeln("found object in ZCT");
-		}
-		//if(root&&object!=null)
-		//	VM.scanning.scanObject(this, object);
-		return object;*/
 	}
 
-}
-final class RefCountSweeperClosure extends org.mmtk.plan.TransitiveClosure{
+	/**
+	 * Non-root references are accounted for by the reference counts,
+	 * except during a backup trace.
+	 *
+	 * @param object The object to be traced.
+	 * @return The object (this collector never moves objects)
+	 */
+	@Inline
 	@Override
-	public void processEdge(ObjectReference source, Address slot) {
-		ObjectReference obj = slot.loadObjectReference();
-		Log.write("-");
-		RefCount.rcSpace.free(source);
-		if(!obj.isNull()){
-			Log.writeln(".");
-			RefCount.rcSpace.free(obj);
-//			VM.scanning.scanObject(this, obj);
+	public ObjectReference traceObject(ObjectReference object) {
+		if (RefCount.performBackupTrace) {
+			mark(object);
 		}
+		return object;
 	}
-}
-@Uninterruptible
-final class RefCountSweeper extends ExplicitFreeListSpace.Sweeper {
 
-	private final RefCountSweeperClosure closure = new RefCountSweeperClosure();
-
-	public boolean sweepCell(ObjectReference object) {
-		if (Space.isInSpace(RefCount.RC_DESC, object)&&RefCountHeader.isLiveRC(object)){//||RefCountCollector.getWrapper().contains(object)){
-			Log.write("sweep object ");
-			Log.writeln(object);
-			VM.scanning.scanObject(closure, object);
-			return true;
+	/**
+	 * Mark an object in the backup trace, enqueueing it to be scanned on
+	 * the first visit.  The boot image is scanned as a root instead.
+	 *
+	 * @param object The object reached by the trace
+	 */
+	@Inline
+	private void mark(ObjectReference object) {
+		if (object.isNull() || Space.isInSpace(Plan.VM_SPACE, object)) return;
+		if (RefCountHeader.testAndMark(object)) {
+			markedBuffer.push(object);
+			processNode(object);
 		}
-		Log.writeln(RefCount.freeMemory().toInt()/(1024f*1024f));
-
-		return false;
 	}
+
 }
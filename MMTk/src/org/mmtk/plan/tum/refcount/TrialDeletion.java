@@ -0,0 +1,294 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+import org.vmmagic.unboxed.Word;
+
+/**
+ * Synchronous cycle collection by trial deletion (Bacon and Rajan).<p>
+ *
+ * An object whose count is decremented but stays above zero is colored
+ * purple and buffered as a possible root of a garbage cycle.  At a cycle
+ * collection the candidates are processed in the three passes of the
+ * algorithm: <i>mark</i> colors everything reachable from a candidate
+ * gray while removing the internal references from the counts,
+ * <i>scan</i> restores (blackens) whatever is still referenced from
+ * outside the gray subgraph or from the roots, and <i>collect</i> frees
+ * what remains white.  Each pass is iterative, driven by a deque, so
+ * long chains do not overflow the stack.<p>
+ *
+ * Traversal stays inside the reference counted space.  The passes run
+ * on a single collector thread after the zero count table has been
+ * processed and before the root flags are cleared, so every object
+ * directly referenced from the roots is treated as externally live.
+ */
+@Uninterruptible
+public final class TrialDeletion {
+
+	private static final int MARK = 0;
+	private static final int SCAN = 1;
+	private static final int SCAN_BLACK = 2;
+	private static final int COLLECT = 3;
+
+	private final RefCountCollector collector;
+	/** Candidates (possible cycle roots) shared by all collectors */
+	private final ObjectReferenceDeque candidates;
+	/** Candidates that survived filtering, to be scanned and collected */
+	private final ObjectReferenceDeque roots;
+	/** Work list of the gray, scan and collect traversals */
+	private final ObjectReferenceDeque work;
+	/** Work list of the black (restoring) traversal */
+	private final ObjectReferenceDeque blackWork;
+	private final ChildVisitor visitor = new ChildVisitor();
+
+	/**
+	 * Constructor
+	 *
+	 * @param collector The collector running the passes
+	 * @param candidates The buffer of possible cycle roots
+	 */
+	public TrialDeletion(RefCountCollector collector, ObjectReferenceDeque candidates) {
+		this.collector = collector;
+		this.candidates = candidates;
+		this.roots = new ObjectReferenceDeque("cycle roots", RefCount.cycleRootPool);
+		this.work = new ObjectReferenceDeque("cycle work", RefCount.cycleWorkPool);
+		this.blackWork = new ObjectReferenceDeque("cycle black", RefCount.cycleBlackPool);
+	}
+
+	/**
+	 * Buffer an object as a possible cycle root, unless it is already
+	 * buffered.  Called when a decrement leaves the count above zero.
+	 *
+	 * @param object The object whose count was decremented
+	 */
+	@Inline
+	public void possibleRoot(ObjectReference object) {
+		if (Space.isInSpace(RefCount.RC_DESC, object) && RefCountHeader.attemptToBuffer(object)) {
+			candidates.push(object);
+		}
+	}
+
+	/**
+	 * Filter the buffered candidates without looking for cycles: drop
+	 * those that were incremented since they were buffered and free those
+	 * that died while buffered.  This bounds the buffer cheaply.
+	 */
+	public void filter() {
+		ObjectReference object;
+		while (!(object = candidates.pop()).isNull()) {
+			if (!retire(object)) {
+				roots.push(object);
+			}
+		}
+		roots.flushLocal();
+		while (!(object = roots.pop()).isNull()) {
+			candidates.push(object);
+		}
+		candidates.flushLocal();
+	}
+
+	/**
+	 * Drop all candidates, freeing those that died while buffered.  Used
+	 * when a backup trace will reclaim garbage cycles instead.
+	 */
+	public void discard() {
+		ObjectReference object;
+		while (!(object = candidates.pop()).isNull()) {
+			RefCountHeader.clearBuffered(object);
+			freeIfDeferred(object);
+		}
+	}
+
+	/**
+	 * Collect the garbage cycles rooted at the buffered candidates.
+	 */
+	public void collectCycles() {
+		ObjectReference object;
+		/* Mark roots */
+		while (!(object = candidates.pop()).isNull()) {
+			if (!retire(object)) {
+				markGray(object);
+				roots.push(object);
+			}
+		}
+		roots.flushLocal();
+		/* Scan roots */
+		while (!(object = roots.pop()).isNull()) {
+			scan(object);
+			candidates.push(object);
+		}
+		candidates.flushLocal();
+		/* Collect roots */
+		while (!(object = candidates.pop()).isNull()) {
+			RefCountHeader.clearBuffered(object);
+			collectWhite(object);
+		}
+	}
+
+	/**
+	 * Decide whether a candidate can leave the buffer without being
+	 * traversed, unbuffering it (and freeing it if it died while
+	 * buffered) if so.
+	 *
+	 * @param object A buffered candidate
+	 * @return True if the candidate has left the buffer
+	 */
+	private boolean retire(ObjectReference object) {
+		if (RefCountHeader.getColor(object).EQ(RefCountHeader.PURPLE) && RefCountHeader.isLiveRC(object)) {
+			return false;
+		}
+		RefCountHeader.clearBuffered(object);
+		freeIfDeferred(object);
+		return true;
+	}
+
+	/**
+	 * Free a candidate that died while it was buffered.  Such a candidate
+	 * has been colored white and its children have already been
+	 * decremented (see {@link RefCountFreeBuffer#free(ObjectReference)}).
+	 * No other object can be white between cycle collections.
+	 */
+	private void freeIfDeferred(ObjectReference object) {
+		if (RefCountHeader.getColor(object).EQ(RefCountHeader.WHITE)) {
+			if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!RefCountHeader.isLiveRC(object));
+			collector.stats.countFreed(object);
+			RefCount.rcSpace.free(object);
+		}
+	}
+
+	/**
+	 * Color gray everything reachable from a candidate, removing the
+	 * counts due to references internal to the gray subgraph.
+	 */
+	private void markGray(ObjectReference object) {
+		if (RefCountHeader.getColor(object).EQ(RefCountHeader.GRAY)) return;
+		RefCountHeader.setColor(object, RefCountHeader.GRAY);
+		work.push(object);
+		while (!(object = work.pop()).isNull()) {
+			visitor.visit(MARK, object);
+		}
+	}
+
+	/**
+	 * Color white the gray objects whose counts are entirely due to
+	 * internal references, restoring the others and what they reach.
+	 */
+	private void scan(ObjectReference object) {
+		work.push(object);
+		while (!(object = work.pop()).isNull()) {
+			if (!RefCountHeader.getColor(object).EQ(RefCountHeader.GRAY)) continue;
+			if (isExternallyLive(object)) {
+				scanBlack(object);
+			} else {
+				RefCountHeader.setColor(object, RefCountHeader.WHITE);
+				visitor.visit(SCAN, object);
+			}
+		}
+	}
+
+	/**
+	 * Restore the counts of everything reachable from an object that is
+	 * live after all.
+	 */
+	private void scanBlack(ObjectReference object) {
+		RefCountHeader.setColor(object, RefCountHeader.BLACK);
+		blackWork.push(object);
+		while (!(object = blackWork.pop()).isNull()) {
+			visitor.visit(SCAN_BLACK, object);
+		}
+	}
+
+	/**
+	 * Free the white objects reachable from a candidate.  Buffered objects
+	 * are left to their own turn.
+	 */
+	private void collectWhite(ObjectReference object) {
+		blackWork.push(object);
+		while (!(object = blackWork.pop()).isNull()) {
+			if (!RefCountHeader.getColor(object).EQ(RefCountHeader.WHITE) || RefCountHeader.isBuffered(object)) continue;
+			RefCountHeader.setColor(object, RefCountHeader.BLACK);
+			visitor.visit(COLLECT, object);
+			collector.stats.countFreed(object);
+			RefCount.rcSpace.free(object);
+		}
+	}
+
+	/**
+	 * @return True if a gray object must survive: it is still counted
+	 * from outside the gray subgraph, or it is referenced from the roots
+	 * or the zero count table.
+	 */
+	@Inline
+	private static boolean isExternallyLive(ObjectReference object) {
+		return RefCountHeader.isLiveRC(object) || RefCountHeader.isRoot(object) || RefCountHeader.isInZCT(object);
+	}
+
+	/**
+	 * Applies the action of the current pass to each child of an object
+	 * that lies in the reference counted space.
+	 */
+	@Uninterruptible
+	private final class ChildVisitor extends TransitiveClosure {
+		private int mode;
+
+		void visit(int mode, ObjectReference object) {
+			this.mode = mode;
+			VM.scanning.scanObject(this, object);
+		}
+
+		@Override
+		@Inline
+		public void processEdge(ObjectReference source, Address slot) {
+			ObjectReference child = slot.loadObjectReference();
+			if (child.isNull() || !Space.isInSpace(RefCount.RC_DESC, child)) return;
+			Word color = RefCountHeader.getColor(child);
+			switch (mode) {
+			case MARK:
+				RefCountHeader.unsyncDecRC(child);
+				if (!color.EQ(RefCountHeader.GRAY)) {
+					RefCountHeader.setColor(child, RefCountHeader.GRAY);
+					work.push(child);
+				}
+				break;
+			case SCAN:
+				work.push(child);
+				break;
+			case SCAN_BLACK:
+				RefCountHeader.unsyncIncRC(child);
+				if (!color.EQ(RefCountHeader.BLACK)) {
+					RefCountHeader.setColor(child, RefCountHeader.BLACK);
+					blackWork.push(child);
+				}
+				break;
+			case COLLECT:
+				if (color.EQ(RefCountHeader.WHITE)) {
+					blackWork.push(child);
+				} else if (!RefCountHeader.isLiveRC(child)) {
+					/* Only the garbage cycle referred to it: the roots keep it alive */
+					collector.enterZCT(child);
+				}
+				break;
+			default:
+				if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(false);
+			}
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import org.mmtk.plan.Phase;
+import org.mmtk.plan.tum.refcount.RefCount;
+import org.mmtk.policy.CopySpace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.SharedDeque;
+import org.mmtk.utility.heap.VMRequest;
+import org.mmtk.utility.options.Options;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements the global state of the deferred reference
+ * counting collector with a copying nursery in front of it.<p>
+ *
+ * The default allocator bump-allocates into the nursery.  Nursery
+ * objects are never logged by the write barrier, never enter the zero
+ * count table and never have their counts touched: most of them die
+ * young and are reclaimed wholesale when the nursery is released.  At
+ * each collection the survivors are copied (promoted) into the
+ * reference counted space, reached from the roots and from the objects
+ * logged since the last collection, which together hold every
+ * reference into the nursery.  Once the closure is complete the fields
+ * of the promoted objects are counted like those of a newly allocated
+ * object, and the promoted objects enter the zero count table.<p>
+ *
+ * The roots are therefore scanned before the decrements are applied and
+ * before the zero count table is drained; the root flag keeps a zero
+ * count object referenced from the roots alive through the sweep of
+ * the table.
+ *
+ * @see org.mmtk.plan.refcount.generational.GenRC
+ */
+@Uninterruptible
+public class GenRefCount extends RefCount {
+
+	/****************************************************************************
+	 * Class variables
+	 */
+	public static final int ALLOC_NURSERY = ALLOC_DEFAULT;
+	public static final int ALLOC_RC = RefCount.ALLOCATORS + 1;
+
+	public static final CopySpace nurserySpace = new CopySpace("nursery", false, VMRequest.create(0.15f, true));
+	public static final int NURSERY = nurserySpace.getDescriptor();
+
+	/** Objects promoted in the current collection, whose fields are yet to be counted */
+	public static final SharedDeque promotedPool = new SharedDeque("promoted", metaDataSpace, 1);
+	/** Slots of objects outside the reference counted space that were given nursery references */
+	public static final SharedDeque remsetPool = new SharedDeque("remset", metaDataSpace, 1);
+
+	public static final short PROCESS_PROMOTED = Phase.createSimple("promoted");
+
+	/**
+	 * Perform the initial determination of liveness from the roots,
+	 * promoting every nursery object reached from the roots or from a
+	 * logged object.
+	 */
+	protected static final short genRootClosurePhase = Phase.createComplex("gen-initial-closure", null,
+		      Phase.scheduleMutator    (PREPARE),
+		      Phase.scheduleGlobal     (PREPARE),
+		      Phase.scheduleCollector  (PREPARE),
+		      Phase.scheduleComplex    (prepareStacks),
+		      Phase.scheduleCollector  (STACK_ROOTS),
+		      Phase.scheduleCollector  (ROOTS),
+		      Phase.scheduleGlobal     (ROOTS),
+		      Phase.scheduleMutator    (PROCESS_MODBUFFER),
+		      Phase.scheduleGlobal     (PROCESS_MODBUFFER),
+		      Phase.scheduleCollector  (PROCESS_MODBUFFER),
+		      Phase.scheduleGlobal     (CLOSURE),
+		      Phase.scheduleCollector  (CLOSURE),
+		      Phase.scheduleGlobal     (PROCESS_PROMOTED),
+		      Phase.scheduleCollector  (PROCESS_PROMOTED));
+
+	/**
+	 * Constructor
+	 */
+	public GenRefCount() {
+		collection = Phase.createComplex("gen-collection", null,
+				Phase.scheduleComplex(initPhase),
+				Phase.scheduleComplex(genRootClosurePhase),
+				Phase.scheduleMutator(PROCESS_DECBUFFER),
+				Phase.scheduleGlobal(PROCESS_DECBUFFER),
+				Phase.scheduleCollector(PROCESS_DECBUFFER),
+				Phase.scheduleComplex(prepare_zct),
+				Phase.scheduleComplex(process_zct),
+				Phase.scheduleGlobal(PROCESS_CYCLES),
+				Phase.scheduleCollector(PROCESS_CYCLES),
+				Phase.scheduleComplex(completeClosurePhase),
+				Phase.scheduleComplex(finishPhase));
+	}
+
+	/*****************************************************************************
+	 * Collection
+	 */
+
+	/**
+	 * Perform a (global) collection phase.
+	 *
+	 * @param phaseId Collection phase to execute.
+	 */
+	@Inline
+	@Override
+	public void collectionPhase(short phaseId) {
+		if (phaseId == PREPARE) {
+			nurserySpace.prepare(true);
+			super.collectionPhase(phaseId);
+			return;
+		}
+		if (phaseId == PROCESS_MODBUFFER) {
+			remsetPool.prepare();
+			super.collectionPhase(phaseId);
+			return;
+		}
+		if (phaseId == PROCESS_PROMOTED) {
+			promotedPool.prepare();
+			return;
+		}
+		if (phaseId == PROCESS_FREE) {
+			/* Every survivor has been promoted; mutators may allocate again if freeing runs concurrently */
+			nurserySpace.release();
+			super.collectionPhase(phaseId);
+			return;
+		}
+		super.collectionPhase(phaseId);
+	}
+
+	/**
+	 * This method controls the triggering of a GC. It is called periodically
+	 * during allocation. Returns true to trigger a collection.
+	 *
+	 * @param spaceFull Space request failed, must recover pages within 'space'.
+	 * @param space The space that triggered the poll.
+	 * @return True if a collection is requested by the plan.
+	 */
+	@Override
+	public boolean collectionRequired(boolean spaceFull, Space space) {
+		boolean nurseryFull = nurserySpace.reservedPages() > Options.nurserySize.getMaxNursery();
+		return super.collectionRequired(spaceFull, space) || nurseryFull;
+	}
+
+	/*****************************************************************************
+	 * Accounting
+	 */
+
+	/**
+	 * Return the number of pages available for allocation, <i>assuming
+	 * all future allocation is to the nursery</i>.
+	 *
+	 * @return The number of pages available for allocation, <i>assuming
+	 * all future allocation is to the nursery</i>.
+	 */
+	@Override
+	public int getPagesAvail() {
+		return super.getPagesAvail() >> 1;
+	}
+
+	/**
+	 * Return the number of pages reserved for copying.
+	 *
+	 * @return The number of pages reserved given the pending
+	 * allocation, including space reserved for copying.
+	 */
+	@Override
+	public int getCollectionReserve() {
+		return nurserySpace.reservedPages() + super.getCollectionReserve();
+	}
+
+	/*****************************************************************************
+	 * Miscellaneous
+	 */
+
+	/**
+	 * @see org.mmtk.plan.Plan#willNeverMove
+	 *
+	 * @param object Object in question
+	 * @return True if the object will never move
+	 */
+	@Override
+	public boolean willNeverMove(ObjectReference object) {
+		if (Space.isInSpace(NURSERY, object))
+			return false;
+		return super.willNeverMove(object);
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.plan.tum.refcount.RefCountCollector;
+import org.mmtk.plan.tum.refcount.RefCountHeader;
+import org.mmtk.plan.tum.refcount.RefCountModifiedProcessor;
+import org.mmtk.plan.tum.refcount.RefCountStats;
+import org.mmtk.plan.tum.refcount.RefCountTraceRoots;
+import org.mmtk.policy.ExplicitFreeListLocal;
+import org.mmtk.policy.ExplicitFreeListSpace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.ForwardingWord;
+import org.mmtk.utility.deque.AddressDeque;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements <i>per-collector thread</i> behavior and state
+ * for the <i>GenRefCount</i> plan: it promotes nursery survivors into
+ * the reference counted space and counts their fields.
+ *
+ * @see GenRefCount
+ */
+@Uninterruptible
+public class GenRefCountCollector extends RefCountCollector {
+
+	/****************************************************************************
+	 * Instance fields
+	 */
+	private final ExplicitFreeListLocal rc = new ExplicitFreeListLocal(GenRefCount.rcSpace);
+	private final GenRefCountModifiedProcessor genModProcessor;
+	/** Counts the referents of the objects promoted in this collection */
+	private final RefCountModifiedProcessor promotedProcessor;
+	private final ObjectReferenceDeque promotedBuffer = new ObjectReferenceDeque("promoted", GenRefCount.promotedPool);
+	private final AddressDeque remset = new AddressDeque("remset", GenRefCount.remsetPool);
+
+	/**
+	 * Constructor
+	 */
+	public GenRefCountCollector() {
+		genModProcessor = new GenRefCountModifiedProcessor((GenRefCountTraceRoots) rctl, stats);
+		promotedProcessor = new RefCountModifiedProcessor(stats);
+	}
+
+	@Override
+	protected RefCountTraceRoots newRootTrace(Trace trace, ObjectReferenceDeque rootBuffer,
+			ObjectReferenceDeque markedBuffer, RefCountStats stats) {
+		return new GenRefCountTraceRoots(trace, rootBuffer, markedBuffer, stats);
+	}
+
+	@Override
+	protected TransitiveClosure getModifiedProcessor() {
+		return genModProcessor;
+	}
+
+	/**
+	 * Promote a nursery object stored into an object outside the
+	 * reference counted space, then increment its copy.
+	 *
+	 * @param object The object that was stored
+	 */
+	@Inline
+	@Override
+	protected void incrementStored(ObjectReference object) {
+		super.incrementStored(((GenRefCountTraceRoots) rctl).promote(object));
+	}
+
+	/****************************************************************************
+	 * Collection
+	 */
+
+	/**
+	 * Perform a per-collector collection phase.
+	 *
+	 * @param phaseId The collection phase to perform
+	 * @param primary Perform any single-threaded activities using this thread.
+	 */
+	@Inline
+	@Override
+	public void collectionPhase(short phaseId, boolean primary) {
+		if (phaseId == GenRefCount.PREPARE) {
+			super.collectionPhase(phaseId, primary);
+			rc.prepare();
+			return;
+		}
+		if (phaseId == GenRefCount.PROCESS_MODBUFFER) {
+			/* Point remembered slots at the promoted copies of their referents */
+			Address slot;
+			while (!(slot = remset.pop()).isZero()) {
+				ObjectReference object = slot.loadObjectReference();
+				if (Space.isInSpace(GenRefCount.NURSERY, object)) {
+					slot.store(((GenRefCountTraceRoots) rctl).promote(object));
+				}
+			}
+			super.collectionPhase(phaseId, primary);
+			return;
+		}
+		if (phaseId == GenRefCount.CLOSURE) {
+			super.collectionPhase(phaseId, primary);
+			promotedBuffer.flushLocal();
+			return;
+		}
+		if (phaseId == GenRefCount.PROCESS_PROMOTED) {
+			/* Every field now refers to the reference counted space or beyond */
+			ObjectReference object;
+			while (!(object = promotedBuffer.pop()).isNull()) {
+				VM.scanning.scanObject(promotedProcessor, object);
+			}
+			return;
+		}
+		if (phaseId == GenRefCount.RELEASE) {
+			rc.release();
+			super.collectionPhase(phaseId, primary);
+			return;
+		}
+		super.collectionPhase(phaseId, primary);
+	}
+
+	/****************************************************************************
+	 * Collection-time allocation
+	 */
+
+	/**
+	 * Allocate space for promoting an object (this method <i>does not</i>
+	 * copy the object, it only allocates space)
+	 *
+	 * @param original A reference to the original object
+	 * @param bytes The size of the space to be allocated (in bytes)
+	 * @param align The requested alignment
+	 * @param offset The alignment offset
+	 * @param allocator The allocator to use
+	 * @return The address of the first byte of the allocated region
+	 */
+	@Inline
+	@Override
+	public Address allocCopy(ObjectReference original, int bytes, int align, int offset, int allocator) {
+		if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(allocator == GenRefCount.ALLOC_RC);
+		return rc.alloc(bytes, align, offset);
+	}
+
+	/**
+	 * Initialize a promoted object like a newly allocated one: its count
+	 * starts at zero, so it enters the zero count table, and its fields
+	 * are counted once the closure is complete.  It is left unlogged, so
+	 * that the write barrier snapshots it from now on.
+	 *
+	 * @param object The newly promoted object
+	 * @param typeRef the type reference for the instance being created
+	 * @param bytes The size of the space to be allocated (in bytes)
+	 * @param allocator The allocator used
+	 */
+	@Inline
+	@Override
+	public void postCopy(ObjectReference object, ObjectReference typeRef, int bytes, int allocator) {
+		ForwardingWord.clearForwardingBits(object);
+		RefCountHeader.initializeHeader(object, false);
+		RefCountHeader.makeUnlogged(object);
+		ExplicitFreeListSpace.unsyncSetLiveBit(object);
+		enterZCT(object);
+		promotedBuffer.push(object);
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import static org.mmtk.policy.SegregatedFreeListSpace.MAX_FREELIST_OBJECT_BYTES;
+
+import org.mmtk.plan.tum.refcount.RefCountConstraints;
+import org.vmmagic.pragma.Uninterruptible;
+
+/**
+ * GenRefCount constants.
+ */
+@Uninterruptible
+public class GenRefCountConstraints extends RefCountConstraints {
+	@Override
+	public boolean movesObjects() { return true; }
+
+	@Override
+	public int maxNonLOSCopyBytes() { return MAX_FREELIST_OBJECT_BYTES; }
+}
@@ -0,0 +1,66 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import org.mmtk.plan.TransitiveClosure;
+import org.mmtk.plan.tum.refcount.RefCount;
+import org.mmtk.plan.tum.refcount.RefCountHeader;
+import org.mmtk.plan.tum.refcount.RefCountStats;
+import org.mmtk.policy.Space;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * Increments the current referents of a logged object, promoting (and
+ * updating the field to) those that are still in the nursery.
+ */
+@Uninterruptible
+public final class GenRefCountModifiedProcessor extends TransitiveClosure {
+
+	private final GenRefCountTraceRoots trace;
+	private final RefCountStats stats;
+
+	/**
+	 * Constructor
+	 *
+	 * @param trace The root trace, which promotes nursery objects
+	 * @param stats The event counts of the owning collector
+	 */
+	public GenRefCountModifiedProcessor(GenRefCountTraceRoots trace, RefCountStats stats) {
+		this.trace = trace;
+		this.stats = stats;
+	}
+
+	/**
+	 * Increment the referent of a field of a modified object.
+	 *
+	 * @param source The modified object.
+	 * @param slot The location containing the object reference.
+	 */
+	@Inline
+	@Override
+	public void processEdge(ObjectReference source, Address slot) {
+		ObjectReference object = slot.loadObjectReference();
+		if (!RefCount.isRefCountObject(object)) return;
+		if (Space.isInSpace(GenRefCount.NURSERY, object)) {
+			object = trace.promote(object);
+			slot.store(object);
+		}
+		if (Space.isInSpace(RefCount.RC_DESC, object)) {
+			stats.countIncrement();
+			RefCountHeader.incRC(object);
+		}
+	}
+}
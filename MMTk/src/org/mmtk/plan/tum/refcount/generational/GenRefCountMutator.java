@@ -0,0 +1,159 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import org.mmtk.plan.tum.refcount.RefCountMutator;
+import org.mmtk.policy.CopyLocal;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.alloc.Allocator;
+import org.mmtk.utility.deque.AddressDeque;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * This class implements <i>per-mutator thread</i> behavior and state
+ * for the <i>GenRefCount</i> plan: default allocation goes to the
+ * nursery.
+ *
+ * @see GenRefCount
+ */
+@Uninterruptible
+public class GenRefCountMutator extends RefCountMutator {
+
+	/****************************************************************************
+	 * Instance fields
+	 */
+	private final CopyLocal nursery = new CopyLocal(GenRefCount.nurserySpace);
+	private final AddressDeque remset = new AddressDeque("remset", GenRefCount.remsetPool);
+
+	/****************************************************************************
+	 * Mutator-time allocation
+	 */
+
+	/**
+	 * Allocate memory for an object.
+	 *
+	 * @param bytes The number of bytes required for the object.
+	 * @param align Required alignment for the object.
+	 * @param offset Offset associated with the alignment.
+	 * @param allocator The allocator associated with this request.
+	 * @param site Allocation site
+	 * @return The address of the newly allocated memory.
+	 */
+	@Inline
+	@Override
+	public Address alloc(int bytes, int align, int offset, int allocator, int site) {
+		if (allocator == GenRefCount.ALLOC_NURSERY) {
+			return nursery.alloc(bytes, align, offset);
+		}
+		return super.alloc(bytes, align, offset, allocator, site);
+	}
+
+	/**
+	 * Perform post-allocation actions.  A nursery object is neither
+	 * logged nor entered into the zero count table: its header is left
+	 * clear, which reads as logged, so the write barrier ignores it.
+	 *
+	 * @param ref The newly allocated object
+	 * @param typeRef the type reference for the instance being created
+	 * @param bytes The size of the space to be allocated (in bytes)
+	 * @param allocator The allocator number to be used for this allocation
+	 */
+	@Inline
+	@Override
+	public void postAlloc(ObjectReference ref, ObjectReference typeRef, int bytes, int allocator) {
+		if (allocator == GenRefCount.ALLOC_NURSERY) {
+			return;
+		}
+		super.postAlloc(ref, typeRef, bytes, allocator);
+	}
+
+	/**
+	 * Return the allocator instance associated with a space
+	 * <code>space</code>, for this plan instance.
+	 *
+	 * @param space The space for which the allocator instance is desired.
+	 * @return The allocator instance associated with this plan instance
+	 * which is allocating into <code>space</code>, or <code>null</code>
+	 * if no appropriate allocator can be established.
+	 */
+	@Override
+	public Allocator getAllocatorFromSpace(Space space) {
+		if (space == GenRefCount.nurserySpace)
+			return nursery;
+		return super.getAllocatorFromSpace(space);
+	}
+
+	/****************************************************************************
+	 * Write barriers
+	 */
+
+	/**
+	 * Stores into nursery objects need no counting: the fields of a
+	 * nursery object are counted when it is promoted.  A slot given a
+	 * nursery reference is remembered, so that it can be updated when
+	 * the referent is promoted.
+	 *
+	 * @param src The object being mutated
+	 * @param slot The location being stored to
+	 * @param old The reference being overwritten
+	 * @param tgt The reference being stored
+	 */
+	@Inline
+	@Override
+	protected void unloggedStore(ObjectReference src, Address slot, ObjectReference old, ObjectReference tgt) {
+		if (Space.isInSpace(GenRefCount.NURSERY, src)) return;
+		super.unloggedStore(src, slot, old, tgt);
+		if (Space.isInSpace(GenRefCount.NURSERY, tgt)) {
+			remset.insert(slot);
+		}
+	}
+
+	/**
+	 * Flush the remembered slots along with the buffers of the
+	 * non-generational plan.
+	 */
+	@Override
+	public void flushRememberedSets() {
+		super.flushRememberedSets();
+		remset.flushLocal();
+	}
+
+	/****************************************************************************
+	 * Collection
+	 */
+
+	/**
+	 * Perform a per-mutator collection phase.
+	 *
+	 * @param phaseId The collection phase to perform
+	 * @param primary Perform any single-threaded activities using this thread.
+	 */
+	@Inline
+	@Override
+	public void collectionPhase(short phaseId, boolean primary) {
+		if (phaseId == GenRefCount.PREPARE) {
+			nursery.rebind(GenRefCount.nurserySpace);
+			super.collectionPhase(phaseId, primary);
+			return;
+		}
+		if (phaseId == GenRefCount.PROCESS_MODBUFFER) {
+			remset.flushLocal();
+			super.collectionPhase(phaseId, primary);
+			return;
+		}
+		super.collectionPhase(phaseId, primary);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.plan.tum.refcount.generational;
+
+import org.mmtk.plan.Trace;
+import org.mmtk.plan.tum.refcount.RefCountStats;
+import org.mmtk.plan.tum.refcount.RefCountTraceRoots;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.deque.ObjectReferenceDeque;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.ObjectReference;
+
+/**
+ * The root trace of the generational plan.  Every nursery object it
+ * reaches is promoted into the reference counted space, and its copy
+ * is scanned so that the nursery objects it refers to are promoted in
+ * turn.  References to other spaces are treated as in the
+ * non-generational plan.
+ */
+@Uninterruptible
+public final class GenRefCountTraceRoots extends RefCountTraceRoots {
+
+	/**
+	 * Constructor
+	 *
+	 * @param trace The global trace
+	 * @param rootBuffer Receives every object flagged as a root
+	 * @param markedBuffer Receives every object marked by a backup trace
+	 * @param stats The event counts of the owning collector
+	 */
+	public GenRefCountTraceRoots(Trace trace, ObjectReferenceDeque rootBuffer, ObjectReferenceDeque markedBuffer,
+			RefCountStats stats) {
+		super(trace, rootBuffer, markedBuffer, stats);
+	}
+
+	@Override
+	public boolean isLive(ObjectReference object) {
+		if (object.isNull()) return false;
+		if (Space.isInSpace(GenRefCount.NURSERY, object)) {
+			return GenRefCount.nurserySpace.isLive(object);
+		}
+		return super.isLive(object);
+	}
+
+	/**
+	 * Promote a nursery object, then trace its copy as the
+	 * non-generational plan would.
+	 *
+	 * @param object The object to be traced.
+	 * @param root Is this a root reference?
+	 * @return The (possibly promoted) object
+	 */
+	@Inline
+	@Override
+	public ObjectReference traceObject(ObjectReference object, boolean root) {
+		return super.traceObject(promote(object), root);
+	}
+
+	/**
+	 * Promote a nursery object, then trace its copy as the
+	 * non-generational plan would.
+	 *
+	 * @param object The object to be traced.
+	 * @return The (possibly promoted) object
+	 */
+	@Inline
+	@Override
+	public ObjectReference traceObject(ObjectReference object) {
+		return super.traceObject(promote(object));
+	}
+
+	/**
+	 * Copy a nursery object into the reference counted space, unless it
+	 * has already been copied, and return the copy.
+	 *
+	 * @param object The object reached by the trace
+	 * @return The copy of a nursery object, or the object itself
+	 */
+	@Inline
+	public ObjectReference promote(ObjectReference object) {
+		if (!object.isNull() && Space.isInSpace(GenRefCount.NURSERY, object)) {
+			return GenRefCount.nurserySpace.traceObject(this, object, GenRefCount.ALLOC_RC);
+		}
+		return object;
+	}
+
+	@Override
+	public boolean willNotMoveInCurrentCollection(ObjectReference object) {
+		if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(!object.isNull());
+		return !Space.isInSpace(GenRefCount.NURSERY, object);
+	}
+}
@@ -70,6 +70,10 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
   private static final int METADATA_OVERHEAD = META_DATA_PAGES_PER_REGION_WITH_BITMAP; // worst case scenario
   public static final float WORST_CASE_FRAGMENTATION = 1 + ((NEW_SIZECLASS_OVERHEAD + METADATA_OVERHEAD)/(float) EmbeddedMetaData.BYTES_IN_REGION);
 
+  /** Every free-list space, for the background sweeper */
+  private static final SegregatedFreeListSpace[] sweepableSpaces = new SegregatedFreeListSpace[MAX_SPACES];
+  private static int sweepableSpaceCount = 0;
+
   /****************************************************************************
    *
    * Instance variables
@@ -78,6 +82,14 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
   protected final AddressArray consumedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray flushedBlockHead = AddressArray.create(sizeClassCount());
   protected final AddressArray availableBlockHead = AddressArray.create(sizeClassCount());
+  /** Blocks left unswept by the last collection (the flushed blocks are unswept too) */
+  protected final AddressArray unsweptBlockHead = AddressArray.create(sizeClassCount());
+  /** Blocks swept after the last collection, whose free list is in their metadata */
+  protected final AddressArray sweptBlockHead = AddressArray.create(sizeClassCount());
+  /** Are there blocks left unswept by the last collection? */
+  private volatile boolean sweepPending = false;
+  /** Should the deferred sweep clear block marks? */
+  private boolean deferredClearMarks;
 
   private final int[] cellSize = new int[sizeClassCount()];
   private final byte[] blockSizeClass = new byte[sizeClassCount()];
@@ -106,6 +118,7 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
     } else {
       pr = new FreeListPageResource(this, start, extent, totalMetadata);
     }
+    sweepableSpaces[sweepableSpaceCount++] = this;
   }
 
   /**
@@ -168,6 +181,14 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
   public Address getAllocationBlock(int sizeClass, AddressArray freeList) {
     lock.acquire();
     Address block;
+    if (!(block = sweptBlockHead.get(sizeClass)).isZero()) {
+      /* Swept after the last collection: the free list is ready */
+      sweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+      lock.release();
+      BlockAllocator.setNext(block, Address.zero());
+      freeList.set(sizeClass, BlockAllocator.getFreeListMeta(block));
+      return block;
+    }
     while(!(block = availableBlockHead.get(sizeClass)).isZero()) {
       availableBlockHead.set(sizeClass, BlockAllocator.getNext(block));
       lock.release();
@@ -188,6 +209,23 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
       consumedBlockHead.set(sizeClass, block);
     }
     lock.release();
+    if (sweepPending) {
+      /* Sweep on demand rather than wait for the background sweeper */
+      while (!(block = takeUnsweptBlock(sizeClass)).isZero()) {
+        if (sweepDeferredBlock(block, sizeClass)) continue;
+        Address cell = advanceToBlock(block, sizeClass);
+        if (!cell.isZero()) {
+          freeList.set(sizeClass, cell);
+          return block;
+        }
+        lock.acquire();
+        BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
+        consumedBlockHead.set(sizeClass, block);
+        lock.release();
+      }
+      /* Free dead blocks of other size classes before growing the space */
+      reclaimDeferredBlocks(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    }
     return expandSizeClass(sizeClass, freeList);
   }
 
@@ -531,6 +569,180 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
     return availableHead;
   }
 
+  /**
+   * Defer the sweep of all blocks to the background sweeper and to
+   * allocation.  Only the list heads are moved, one step per size
+   * class, and no block is visited.  The flushed blocks stay where they are: nothing is
+   * added to the flushed lists until the next collection.
+   *
+   * @param clearMarks should we clear block mark bits as we process.
+   */
+  protected final void deferSweepConsumedBlocks(boolean clearMarks) {
+    deferredClearMarks = clearMarks;
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(unsweptBlockHead.get(sizeClass).isZero());
+      unsweptBlockHead.set(sizeClass, consumedBlockHead.get(sizeClass));
+      consumedBlockHead.set(sizeClass, Address.zero());
+    }
+    sweepPending = true;
+  }
+
+  /**
+   * Sweep whatever the last collection left unswept.  This must be done
+   * before the mark state changes at the start of the next collection.
+   */
+  protected final void completeDeferredSweep() {
+    if (!sweepPending) return;
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Address block;
+      while (!(block = takeUnsweptBlock(sizeClass)).isZero()) {
+        if (!sweepDeferredBlock(block, sizeClass)) {
+          makeSweptBlock(block, sizeClass);
+        }
+      }
+    }
+    sweepPending = false;
+  }
+
+  /**
+   * Finish the deferred sweep of every free-list space.  Dead blocks
+   * awaiting the background sweeper still count as reserved pages, so
+   * this is done before a full heap is taken to require a collection.
+   *
+   * @return True if any space had a sweep pending
+   */
+  public static boolean completeDeferredSweeps() {
+    boolean swept = false;
+    for (int i = 0; i < sweepableSpaceCount; i++) {
+      SegregatedFreeListSpace space = sweepableSpaces[i];
+      if (space.sweepPending) {
+        space.completeDeferredSweep();
+        swept = true;
+      }
+    }
+    return swept;
+  }
+
+  /**
+   * Sweep one block left unswept by the last collection, in any
+   * free-list space.  Called repeatedly by the background sweeper.
+   *
+   * @return True if a block was swept, so there may be more to do
+   */
+  public static boolean sweepInBackground() {
+    for (int i = 0; i < sweepableSpaceCount; i++) {
+      SegregatedFreeListSpace space = sweepableSpaces[i];
+      if (space.sweepPending && space.sweepOneDeferredBlock()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sweep one block left unswept by the last collection.
+   *
+   * @return True if a block was swept
+   */
+  private boolean sweepOneDeferredBlock() {
+    for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
+      Address block = takeUnsweptBlock(sizeClass);
+      if (!block.isZero()) {
+        if (!sweepDeferredBlock(block, sizeClass)) {
+          makeSweptBlock(block, sizeClass);
+        }
+        return true;
+      }
+    }
+    sweepPending = false;
+    return false;
+  }
+
+  /**
+   * Sweep unswept blocks of any size class until at least the given
+   * number of bytes has been freed, or none are left.  Called before
+   * the space grows, so that dead blocks awaiting the sweeper do not
+   * cause a premature collection.
+   *
+   * @param bytes The number of bytes wanted
+   */
+  private void reclaimDeferredBlocks(int bytes) {
+    int freed = 0;
+    for (int sizeClass = 0; sizeClass < sizeClassCount() && freed < bytes; sizeClass++) {
+      Address block;
+      while (freed < bytes && !(block = takeUnsweptBlock(sizeClass)).isZero()) {
+        if (sweepDeferredBlock(block, sizeClass)) {
+          freed += BlockAllocator.blockSize(blockSizeClass[sizeClass]);
+        } else {
+          makeSweptBlock(block, sizeClass);
+        }
+      }
+    }
+    if (freed < bytes) sweepPending = false;
+  }
+
+  /**
+   * Take a block left unswept by the last collection off its list.
+   *
+   * @param sizeClass The size class
+   * @return The block, or zero if none is left in this size class
+   */
+  private Address takeUnsweptBlock(int sizeClass) {
+    lock.acquire();
+    Address block = flushedBlockHead.get(sizeClass);
+    if (!block.isZero()) {
+      flushedBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+    } else {
+      block = unsweptBlockHead.get(sizeClass);
+      if (!block.isZero()) {
+        unsweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+      }
+    }
+    lock.release();
+    if (!block.isZero()) {
+      BlockAllocator.setNext(block, Address.zero());
+    }
+    return block;
+  }
+
+  /**
+   * Sweep a block taken off the unswept lists, freeing it if it
+   * contains no live objects.
+   *
+   * @param block The block, which is on no list
+   * @param sizeClass The size class of the block
+   * @return True if the block was freed
+   */
+  private boolean sweepDeferredBlock(Address block, int sizeClass) {
+    Extent blockSize = Extent.fromIntSignExtend(BlockAllocator.blockSize(blockSizeClass[sizeClass]));
+    if (containsLiveCell(block, blockSize, deferredClearMarks)) {
+      return false;
+    }
+    BlockAllocator.free(this, block);
+    return true;
+  }
+
+  /**
+   * Build the free list of a live block and make it available to
+   * allocation, or consume it if it is full.
+   *
+   * @param block The block, which is on no list
+   * @param sizeClass The size class of the block
+   */
+  private void makeSweptBlock(Address block, int sizeClass) {
+    Address cell = makeFreeList(block, sizeClass);
+    lock.acquire();
+    if (cell.isZero()) {
+      BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
+      consumedBlockHead.set(sizeClass, block);
+    } else {
+      BlockAllocator.setFreeListMeta(block, cell);
+      BlockAllocator.setNext(block, sweptBlockHead.get(sizeClass));
+      sweptBlockHead.set(sizeClass, block);
+    }
+    lock.release();
+  }
+
   /**
    * Eagerly consume all remaining blocks.
    */
@@ -543,6 +755,12 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
         BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
         consumedBlockHead.set(sizeClass, block);
       }
+      while (!sweptBlockHead.get(sizeClass).isZero()) {
+        Address block = sweptBlockHead.get(sizeClass);
+        sweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+        BlockAllocator.setNext(block, consumedBlockHead.get(sizeClass));
+        consumedBlockHead.set(sizeClass, block);
+      }
     }
   }
 
@@ -553,6 +771,12 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
     for (int sizeClass = 0; sizeClass < sizeClassCount(); sizeClass++) {
       flushedBlockHead.set(sizeClass, availableBlockHead.get(sizeClass));
       availableBlockHead.set(sizeClass, Address.zero());
+      while (!sweptBlockHead.get(sizeClass).isZero()) {
+        Address block = sweptBlockHead.get(sizeClass);
+        sweptBlockHead.set(sizeClass, BlockAllocator.getNext(block));
+        BlockAllocator.setNext(block, flushedBlockHead.get(sizeClass));
+        flushedBlockHead.set(sizeClass, block);
+      }
     }
   }
 
@@ -806,7 +1030,18 @@ public abstract class SegregatedFreeListSpace extends Space implements Constants
    */
   @Inline
   public static boolean testAndSetLiveBit(ObjectReference object) {
-    return updateLiveBit(VM.objectModel.objectStartRef(object), true, true);
+    return testAndSetLiveBit(VM.objectModel.objectStartRef(object));
+  }
+
+  /**
+   * Atomically set the live bit for a given address
+   *
+   * @param address The address whose live bit is to be set.
+   * @return True if the bit was changed to true.
+   */
+  @Inline
+  public static boolean testAndSetLiveBit(Address address) {
+    return updateLiveBit(address, true, true);
   }
 
   /**
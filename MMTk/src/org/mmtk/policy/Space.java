@@ -230,7 +230,11 @@ public abstract class Space implements Constants {
 
   /** Cumulative committed pages getter @return Cumulative committed pages. */
   public static long cumulativeCommittedPages() {
-    return PageResource.cumulativeCommittedPages();
+    long pages = 0;
+    for (int i = 0; i < spaceCount; i++) {
+      pages += spaces[i].pr.cumulativeCommittedPages();
+    }
+    return pages;
   }
 
   /****************************************************************************
@@ -58,6 +58,7 @@ public final class ImmixSpace extends Space implements Constants {
           byte lineMarkState = RESET_LINE_MARK_STATE;
   private byte lineUnavailState = RESET_LINE_MARK_STATE;
   private boolean inCollection;
+  private boolean allocAsMarked = false;
   private int linesConsumed = 0;
 
   private Lock mutatorLock = VM.newLock(getName()+"mutator");
@@ -150,6 +151,15 @@ public final class ImmixSpace extends Space implements Constants {
     return didDefrag;
   }
 
+  /**
+   * Should objects allocated during a collection be marked live?  A
+   * concurrent plan needs this, since mutators keep allocating while the
+   * trace runs, and the trace never visits their new objects.
+   */
+  public void makeAllocAsMarked() {
+    allocAsMarked = true;
+  }
+
   /**
    * Determine the collection kind.
    *
@@ -348,6 +358,13 @@ public final class ImmixSpace extends Space implements Constants {
   */
   @Inline
   public void postAlloc(ObjectReference object, int bytes) {
+    if (allocAsMarked && inCollection) {
+      /* Allocated during a concurrent trace: mark the object and its lines */
+      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
+      ObjectHeader.writeMarkState(object, markState, bytes > BYTES_IN_LINE);
+      markLines(object);
+      return;
+    }
     if (bytes > BYTES_IN_LINE)
       ObjectHeader.markAsStraddling(object);
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(ObjectHeader.isNewObject(object));
@@ -176,11 +176,10 @@ public class ImmixAllocator extends Allocator implements Constants {
       return ptr; // failed allocation --- we will need to GC
     }
 
-    /* we have been given a clean block */
+    /* we have been given a clean block: the page resource zeroed it */
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(Block.isAligned(ptr));
     lineUseCount = LINES_IN_BLOCK;
 
-    zeroBlock(ptr);
     if (requestForLarge) {
       largeCursor = ptr;
       largeLimit = ptr.plus(BYTES_IN_BLOCK);
@@ -309,12 +308,6 @@ public class ImmixAllocator extends Allocator implements Constants {
     return true; // found something good
   }
 
-  private void zeroBlock(Address block) {
-    // FIXME: efficiency check here!
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(block.toWord().and(Word.fromIntSignExtend(BYTES_IN_BLOCK-1)).isZero());
-    VM.memory.zero(block, Extent.fromIntZeroExtend(BYTES_IN_BLOCK));
-   }
-
   /** @return the space associated with this squish allocator */
   public final Space getSpace() { return space; }
 
@@ -53,9 +53,12 @@ import org.vmmagic.pragma.*;
   public final void flushLocal() {
     super.flushLocal();
     if (head.NE(Deque.HEAD_INITIAL_VALUE)) {
-      closeAndInsertHead(queue.getArity());
+      queue.enqueue(head, queue.getArity(), false);
       head = Deque.HEAD_INITIAL_VALUE;
     }
+    if (stealable != null) {
+      stealable.drainTo(queue, queue.getArity());
+    }
   }
 
   /****************************************************************************
@@ -122,7 +125,8 @@ import org.vmmagic.pragma.*;
    */
   @Inline
   private void closeAndInsertHead(int arity) {
-    queue.enqueue(head, arity, false);
+    if (stealable == null || !stealable.push(head))
+      queue.enqueue(head, arity, false);
   }
 
   /**
@@ -147,7 +151,13 @@ import org.vmmagic.pragma.*;
     }
 
     // Wait for another entry to materialize...
-    tailBufferEnd = queue.dequeueAndWait(arity, true);
+    if (queue.isWorkStealing()) {
+      tailBufferEnd = stealable.pop();
+      if (tailBufferEnd.isZero())
+        tailBufferEnd = queue.dequeueOrSteal(arity, stealable);
+    } else {
+      tailBufferEnd = queue.dequeueAndWait(arity, true);
+    }
     tail = bufferStart(tail);
 
     // return true if a) there is not a tail buffer or b) it is empty
@@ -50,6 +50,7 @@ import org.vmmagic.unboxed.*;
    */
   LocalQueue(SharedDeque queue) {
     super(queue);
+    stealable = queue.register();
   }
 
  /****************************************************************************
@@ -58,12 +59,15 @@ import org.vmmagic.unboxed.*;
    */
   @Entrypoint
   protected Address head; // the start of the buffer
+  /** Full buffers other consumers may steal, or null if the shared queue does not steal */
+  protected final WorkStealingDeque stealable;
 
   /**
    * Reset the local buffer (throwing away any local entries).
    */
   public void resetLocal() {
     super.resetLocal();
+    if (VM.VERIFY_ASSERTIONS && stealable != null) VM.assertions._assert(stealable.isEmpty());
     head = Deque.HEAD_INITIAL_VALUE;
   }
 
@@ -121,7 +125,11 @@ import org.vmmagic.unboxed.*;
       return false;
     }
     // Wait for another entry to materialize...
-    head = queue.dequeueAndWait(arity);
+    if (queue.isWorkStealing()) {
+      head = queue.dequeueOrSteal(arity, stealable);
+    } else {
+      head = queue.dequeueAndWait(arity);
+    }
     // return true if a) there is a head buffer, and b) it is non-empty
     return (head.EQ(Deque.HEAD_INITIAL_VALUE) || bufferOffset(head).isZero());
   }
@@ -147,7 +155,9 @@ import org.vmmagic.unboxed.*;
     do {
       if (head.NE(Deque.HEAD_INITIAL_VALUE))
         queue.free(head);
-      head = queue.dequeue(arity);
+      head = (stealable != null) ? stealable.pop() : Deque.HEAD_INITIAL_VALUE;
+      if (head.EQ(Deque.HEAD_INITIAL_VALUE))
+        head = queue.dequeue(arity);
     } while (head.NE(Deque.HEAD_INITIAL_VALUE) && bufferOffset(head).isZero());
 
     if (head.EQ(Deque.HEAD_INITIAL_VALUE))
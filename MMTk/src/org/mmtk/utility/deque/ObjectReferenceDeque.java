@@ -96,6 +96,21 @@ import org.vmmagic.pragma.*;
     }
   }
 
+  /**
+   * Pop an object from the local buffer, without taking a buffer from
+   * the shared queue or waiting for other consumers.
+   *
+   * @return The next object in the local buffer, or zero if the local
+   * buffer is empty
+   */
+  @Inline
+  public final ObjectReference popLocal() {
+    if (bufferOffset(head).isZero()) {
+      return ObjectReference.nullReference();
+    }
+    return uncheckedDequeue().toObjectReference();
+  }
+
   @Inline
   public final boolean isEmpty() {
     return !checkDequeue(1);
@@ -17,6 +17,7 @@ import org.mmtk.policy.Space;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Log;
 import org.mmtk.vm.Lock;
+import org.mmtk.vm.SynchronizedCounter;
 import org.mmtk.vm.VM;
 import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
@@ -27,7 +28,16 @@ import org.vmmagic.unboxed.Offset;
 /**
  * This supports <i>unsynchronized</i> enqueuing and dequeuing of buffers
  * for shared use.  The data can be added to and removed from either end
- * of the deque.
+ * of the deque.<p>
+ *
+ * A deque created for work stealing gives each local deque on it a
+ * private {@link WorkStealingDeque} of full buffers, from which idle
+ * consumers steal.  The shared list then only carries flushed and
+ * overflowing buffers, and consumers wait for termination by counting
+ * themselves in and out of an atomic counter rather than under the lock.
+ * Local deques beyond the first {@link #MAX_STEALERS} have no
+ * work-stealing deque of their own, but still steal and wait the same
+ * way.
  */
 @Uninterruptible
 public class SharedDeque extends Deque implements Constants {
@@ -39,6 +49,11 @@ public class SharedDeque extends Deque implements Constants {
   private static final boolean TRACE_DETAIL = false;
   private static final boolean TRACE_BLOCKERS = false;
 
+  /** The maximum number of local deques that steal from each other */
+  private static final int MAX_STEALERS = 256;
+  /** How often an idle stealer checks the time while polling */
+  private static final int POLLS_PER_TIME_CHECK = 1 << 20;
+
   /****************************************************************************
    *
    * Public instance methods
@@ -48,10 +63,33 @@ public class SharedDeque extends Deque implements Constants {
    * Constructor
    */
   public SharedDeque(String name, RawPageSpace rps, int arity) {
+    this(name, rps, arity, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param name The name of this deque, for diagnostics
+   * @param rps The raw page space from which buffers are allocated
+   * @param arity The number of words per entry
+   * @param workStealing Should the local deques on this deque steal
+   * work from each other?
+   */
+  public SharedDeque(String name, RawPageSpace rps, int arity, boolean workStealing) {
     this.rps = rps;
     this.arity = arity;
     this.name = name;
     lock = VM.newLock("SharedDeque");
+    if (workStealing) {
+      stealers = new WorkStealingDeque[MAX_STEALERS];
+      for (int i = 0; i < MAX_STEALERS; i++) {
+        stealers[i] = new WorkStealingDeque(rps);
+      }
+      idleConsumers = VM.newSynchronizedCounter();
+    } else {
+      stealers = null;
+      idleConsumers = null;
+    }
     clearCompletionFlag();
     head = HEAD_INITIAL_VALUE;
     tail = TAIL_INITIAL_VALUE;
@@ -95,6 +133,128 @@ public class SharedDeque extends Deque implements Constants {
     unlock();
   }
 
+  /**
+   * Hand out a work-stealing deque to a new local deque.  Called when
+   * the local deque is constructed.  The work-stealing deques are all
+   * created with this deque, so nothing is allocated here.
+   *
+   * @return The work-stealing deque, or <code>null</code> if this deque
+   * does not support stealing or has no room for another stealer
+   */
+  final WorkStealingDeque register() {
+    if (stealers == null) return null;
+    WorkStealingDeque stealer = null;
+    lock();
+    if (numStealers < MAX_STEALERS) {
+      stealer = stealers[numStealers++];
+    }
+    unlock();
+    return stealer;
+  }
+
+  /**
+   * @return True if the local deques on this deque steal work from
+   * each other
+   */
+  @Inline
+  final boolean isWorkStealing() {
+    return stealers != null;
+  }
+
+  /**
+   * Take a buffer from the shared list or steal one from another local
+   * deque.  When all consumers take part, wait until either work turns
+   * up or every consumer is idle.<p>
+   *
+   * An idle consumer holds no buffers, and only a busy one can produce
+   * them, so once every consumer has counted itself idle the round is
+   * over.  Idle consumers poll the deques without taking the lock.
+   *
+   * @param arity The arity of the buffers
+   * @param thief The work-stealing deque of the caller, which has
+   * already been found empty, or <code>null</code> if it has none
+   * @return A buffer, or zero if the work is complete
+   */
+  final Address dequeueOrSteal(int arity, WorkStealingDeque thief) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
+    Address buf = take(thief);
+    if (!buf.isZero() || numConsumers == 1 || complete()) return buf;
+    long startNano = 0;
+    long lastElapsedNano = 0;
+    int polls = 0;
+    idleConsumers.increment();
+    while (true) {
+      VM.memory.sync();
+      if (idleConsumers.peek() == numConsumers) setCompletionFlag();
+      if (complete()) {
+        idleConsumers.decrement();
+        return Address.zero();
+      }
+      if (workAvailable()) {
+        idleConsumers.decrement();
+        buf = take(thief);
+        if (!buf.isZero()) return buf;
+        idleConsumers.increment();
+      }
+      if (++polls == POLLS_PER_TIME_CHECK) {
+        polls = 0;
+        if (startNano == 0) {
+          startNano = VM.statistics.nanoTime();
+        } else {
+          long elapsedNano = VM.statistics.nanoTime() - startNano;
+          if (elapsedNano - lastElapsedNano > WARN_PERIOD) {
+            Log.write("GC Warning: SharedDeque("); Log.write(name);
+            Log.write(") steal has reached "); Log.write(VM.statistics.nanosToSecs(elapsedNano));
+            Log.write(", "); Log.write(idleConsumers.peek()); Log.write("/");
+            Log.write(numConsumers); Log.writeln(" threads idle");
+            lastElapsedNano = elapsedNano;
+          }
+          if (elapsedNano > TIMEOUT_PERIOD) {
+            VM.assertions.fail("GC Error: SharedDeque Timeout");
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Take a buffer from the shared list, if it is not empty, or else
+   * steal one, trying each other stealer once.
+   *
+   * @param thief The work-stealing deque of the caller, or <code>null</code>
+   * @return A buffer, or zero if none was found
+   */
+  private Address take(WorkStealingDeque thief) {
+    if (!head.isZero()) {
+      Address buf = dequeue(false, false);
+      if (!buf.isZero()) return buf;
+    }
+    int n = numStealers;
+    int v = (thief == null) ? 0 : thief.victim;
+    Address buf = Address.zero();
+    for (int i = 0; i < n && buf.isZero(); i++) {
+      v = (v + 1) % n;
+      WorkStealingDeque victim = stealers[v];
+      if (victim != thief) {
+        buf = victim.steal();
+      }
+    }
+    if (thief != null) thief.victim = v;
+    return buf;
+  }
+
+  /**
+   * @return True if the shared list or any work-stealing deque appears
+   * to hold a buffer
+   */
+  private boolean workAvailable() {
+    if (!head.isZero()) return true;
+    for (int i = 0; i < numStealers; i++) {
+      if (!stealers[i].isEmpty()) return true;
+    }
+    return false;
+  }
+
   public final void clearDeque(int arity) {
     Address buf = dequeue(arity);
     while (!buf.isZero()) {
@@ -121,6 +281,8 @@ public class SharedDeque extends Deque implements Constants {
 
   final Address dequeueAndWait(int arity, boolean fromTail) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(arity == this.arity);
+    /* Consumers of a work-stealing deque wait in dequeueOrSteal */
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(stealers == null);
     Address buf = dequeue(false, fromTail);
     if (buf.isZero() && (!complete())) {
       buf = dequeue(true, fromTail);  // Wait inside dequeue
@@ -134,7 +296,7 @@ public class SharedDeque extends Deque implements Constants {
    * is complete.
    */
   public final void prepare() {
-    if (DISABLE_WAITING) {
+    if (DISABLE_WAITING && stealers == null) {
       prepareNonBlocking();
     } else {
       /* This should be the normal mode of operation once performance is fixed */
@@ -158,6 +320,7 @@ public class SharedDeque extends Deque implements Constants {
    */
   private void prepare(int consumers) {
     if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(numConsumersWaiting == 0);
+    if (VM.VERIFY_ASSERTIONS && stealers != null) VM.assertions._assert(idleConsumers.peek() == 0);
     setNumConsumers(consumers);
     clearCompletionFlag();
   }
@@ -167,6 +330,11 @@ public class SharedDeque extends Deque implements Constants {
     clearCompletionFlag();
     setNumConsumersWaiting(0);
     assertExhausted();
+    if (stealers != null) {
+      for (int i = 0; i < numStealers; i++) {
+        stealers[i].release();
+      }
+    }
   }
 
   public final void assertExhausted() {
@@ -232,6 +400,13 @@ public class SharedDeque extends Deque implements Constants {
   private volatile int bufsenqueued;
   private Lock lock;
 
+  /** The work-stealing deques of the local deques, or null */
+  private final WorkStealingDeque[] stealers;
+  /** The number of registered work-stealing deques */
+  private volatile int numStealers;
+  /** # consumers that found no work, when stealing */
+  private final SynchronizedCounter idleConsumers;
+
   private static final long WARN_PERIOD = (long)(2*1E9);
   private static final long TIMEOUT_PERIOD = 10 * WARN_PERIOD;
 
@@ -332,7 +507,7 @@ public class SharedDeque extends Deque implements Constants {
       long endCycles = startCycles + ((long) 1e9); // a few hundred milliseconds more or less.
       long nowCycles;
       do {
-        VM.memory.isync();
+        VM.memory.sync();
         Address rtn = ((fromTail) ? tail : head);
         if (!rtn.isZero() || complete()) return;
         nowCycles = VM.statistics.cycles();
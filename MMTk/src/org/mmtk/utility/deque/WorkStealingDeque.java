@@ -0,0 +1,192 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.deque;
+
+import org.mmtk.policy.RawPageSpace;
+import org.mmtk.policy.Space;
+import org.mmtk.utility.Constants;
+import org.mmtk.vm.VM;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A bounded Chase-Lev work-stealing deque of buffers, owned by a single
+ * <code>LocalQueue</code>.<p>
+ *
+ * The owner pushes and pops full buffers at the bottom without locking;
+ * other threads steal from the top with a single compare-and-swap.  Only
+ * a steal racing the owner for the last buffer needs the CAS to be
+ * resolved.  The deque is a ring in one page of the shared deque's raw
+ * page space, whose first word holds <code>top</code>; it is allocated on
+ * first use and released when the shared deque is reset.  When the ring
+ * is full the owner falls back to the shared deque.
+ */
+@Uninterruptible
+final class WorkStealingDeque implements Constants {
+
+  /** Offset of <code>top</code> in the ring page */
+  private static final Offset TOP_OFFSET = Offset.zero();
+  /** Offset of the first entry in the ring page */
+  private static final int ENTRIES_OFFSET = BYTES_IN_ADDRESS;
+  private static final int LOG_CAPACITY = LOG_BYTES_IN_PAGE - LOG_BYTES_IN_ADDRESS - 1;
+  private static final int CAPACITY = 1 << LOG_CAPACITY;
+  private static final int MASK = CAPACITY - 1;
+
+  private final RawPageSpace rps;
+  /** The ring, or zero until the first push */
+  private volatile Address ring = Address.zero();
+  /** Index of the next free entry; written by the owner only */
+  private volatile int bottom;
+  /** Index of the stealer this deque's owner last stole from */
+  int victim;
+
+  /**
+   * Constructor
+   *
+   * @param rps The raw page space from which the ring is allocated
+   */
+  WorkStealingDeque(RawPageSpace rps) {
+    this.rps = rps;
+  }
+
+  /**
+   * Push a buffer at the bottom.  Owner only.
+   *
+   * @param buf The buffer
+   * @return False if the deque is full, leaving the buffer to the caller
+   */
+  @Inline
+  boolean push(Address buf) {
+    if (ring.isZero()) allocRing();
+    int b = bottom;
+    if (b - top() >= CAPACITY) return false;
+    entry(b).store(buf);
+    VM.memory.sync();
+    bottom = b + 1;
+    return true;
+  }
+
+  /**
+   * Pop the most recently pushed buffer.  Owner only.
+   *
+   * @return The buffer, or zero if the deque is empty
+   */
+  @Inline
+  Address pop() {
+    if (ring.isZero()) return Address.zero();
+    int b = bottom - 1;
+    bottom = b;
+    VM.memory.sync();
+    int t = top();
+    if (b < t) {
+      bottom = t;
+      return Address.zero();
+    }
+    Address buf = entry(b).loadAddress();
+    if (b > t) return buf;
+    /* The last buffer: race any thief for it */
+    if (!claim(t)) buf = Address.zero();
+    bottom = t + 1;
+    return buf;
+  }
+
+  /**
+   * Steal the oldest buffer.  Any thread.
+   *
+   * @return The buffer, or zero if the deque is empty or the steal lost
+   * a race
+   */
+  @Inline
+  Address steal() {
+    if (ring.isZero()) return Address.zero();
+    int t = top();
+    VM.memory.sync();
+    if (t >= bottom) return Address.zero();
+    Address buf = entry(t).loadAddress();
+    return claim(t) ? buf : Address.zero();
+  }
+
+  /**
+   * @return True if the deque appears empty to a thief
+   */
+  @Inline
+  boolean isEmpty() {
+    return ring.isZero() || top() >= bottom;
+  }
+
+  /**
+   * Move every buffer to the shared deque, from which any consumer
+   * can take them.  Owner only.
+   *
+   * @param queue The shared deque
+   * @param arity The arity of the buffers
+   */
+  void drainTo(SharedDeque queue, int arity) {
+    Address buf;
+    while (!(buf = pop()).isZero()) {
+      queue.enqueue(buf, arity, false);
+    }
+  }
+
+  /**
+   * Release the ring, which must be empty.  Called when the shared deque
+   * is reset, while no thread is using this deque.
+   */
+  void release() {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(isEmpty());
+    if (!ring.isZero()) {
+      Address page = ring;
+      ring = Address.zero();
+      rps.release(page);
+    }
+  }
+
+  /**
+   * Advance <code>top</code> past an entry, unless another thread has
+   * already done so.  A spurious failure of the store is retried.
+   *
+   * @param t The index of the entry being taken
+   * @return True if this thread took the entry
+   */
+  @Inline
+  private boolean claim(int t) {
+    do {
+      if (ring.prepareInt(TOP_OFFSET) != t) return false;
+    } while (!ring.attempt(t, t + 1, TOP_OFFSET));
+    return true;
+  }
+
+  @Inline
+  private int top() {
+    return ring.loadInt(TOP_OFFSET);
+  }
+
+  @Inline
+  private Address entry(int index) {
+    return ring.plus(ENTRIES_OFFSET + ((index & MASK) << LOG_BYTES_IN_ADDRESS));
+  }
+
+  private void allocRing() {
+    Address page = rps.acquire(1);
+    if (page.isZero()) {
+      Space.printUsageMB();
+      VM.assertions.fail("Failed to allocate space for work-stealing deque.  Is metadata virtual memory exhausted?");
+    }
+    page.store(0, TOP_OFFSET);
+    bottom = 0;
+    VM.memory.sync();
+    ring = page;
+  }
+}
@@ -43,44 +43,19 @@ import org.vmmagic.unboxed.*;
   private static Extent currentHeapSize;
 
 
-  private static final double[][] generationalFunction =    {{0.00, 0.00, 0.10, 0.30, 0.60, 0.80, 1.00},
-      { 0.00, 0.90, 0.90, 0.95, 1.00, 1.00, 1.00 },
-      { 0.01, 0.90, 0.90, 0.95, 1.00, 1.00, 1.00 },
-      { 0.02, 0.95, 0.95, 1.00, 1.00, 1.00, 1.00 },
-      { 0.07, 1.00, 1.00, 1.10, 1.15, 1.20, 1.20 },
-      { 0.15, 1.00, 1.00, 1.20, 1.25, 1.35, 1.30 },
-      { 0.40, 1.00, 1.00, 1.25, 1.30, 1.50, 1.50 },
-      { 1.00, 1.00, 1.00, 1.25, 1.30, 1.50, 1.50 } };
-
-  private static final double[][] nongenerationalFunction = {{0.00, 0.00, 0.10, 0.30, 0.60, 0.80, 1.00},
-      { 0.00, 0.90, 0.90, 0.95, 1.00, 1.00, 1.00 },
-      { 0.02, 0.90, 0.90, 0.95, 1.00, 1.00, 1.00 },
-      { 0.05, 0.95, 0.95, 1.00, 1.00, 1.00, 1.00 },
-      { 0.15, 1.00, 1.00, 1.10, 1.15, 1.20, 1.20 },
-      { 0.30, 1.00, 1.00, 1.20, 1.25, 1.35, 1.30 },
-      { 0.50, 1.00, 1.00, 1.25, 1.30, 1.50, 1.50 },
-      { 1.00, 1.00, 1.00, 1.25, 1.30, 1.50, 1.50 } };
+  /**
+   * The policy used when the <code>heapSizing</code> option is
+   * <code>live-ratio</code>, the default
+   */
+  private static final HeapSizingPolicy liveRatioPolicy =
+    new LiveRatioHeapSizingPolicy(VM.activePlan.constraints().generational());
 
   /**
-   * An encoding of the function used to manage heap size.
-   * The xaxis represents the live ratio at the end of a major collection.
-   * The yaxis represents the GC load (GC time/total time).
-   * The interior of the matrix represents a ratio to shrink or grow
-   * the heap for a given pair of live ratio and GC load.
-   * The constraints on the matrix are:
-   * <ul>
-   * <li> function[0][0] is ignored.
-   * <li> All numbers in the first row must monotonically increase and
-   *      must be in the range from 0 to 1 inclusive.</li>
-   * <li> All numbers in the first column must monotonically increase
-   *      and must be in the range from 0 to 1 inclusive.</li>
-   * <li> There must be 0 and 1 values specified in both dimensions.
-   * <li> For all interior points in the matrix, the value must be
-   *      greater than the liveRatio for that column.</li>
-   * </ul>
+   * The policy used when the <code>heapSizing</code> option is
+   * <code>pause-goal</code>
    */
-  private static final double[][] function =
-    VM.activePlan.constraints().generational() ? generationalFunction : nongenerationalFunction;
+  private static final HeapSizingPolicy pauseGoalPolicy =
+    new PauseGoalHeapSizingPolicy(VM.activePlan.constraints().generational());
 
   private static long endLastMajorGC;
   private static double accumulatedGCTime;
@@ -96,7 +71,6 @@ import org.vmmagic.unboxed.*;
       maxHeapSize = initialHeapSize;
     currentHeapSize = initialHeapSize;
     VM.events.heapSizeChanged(currentHeapSize);
-    if (VM.VERIFY_ASSERTIONS) sanityCheck();
     endLastMajorGC = VM.statistics.nanoTime();
   }
 
@@ -136,13 +110,25 @@ import org.vmmagic.unboxed.*;
     VM.events.heapSizeChanged(currentHeapSize);
   }
 
+  /**
+   * @return The heap sizing policy selected by the options
+   */
+  private static HeapSizingPolicy policy() {
+    if (Options.heapSizing.getValue() == Options.heapSizing.PAUSE_GOAL)
+      return pauseGoalPolicy;
+    return liveRatioPolicy;
+  }
+
   /**
    * Record the time taken by the current GC;
    * used to compute gc load, one of the inputs
-   * into the heap size management function
+   * into the heap size management function.
+   * The heap sizing policy also observes each
+   * pause.
    */
   public static void recordGCTime(double time) {
     accumulatedGCTime += time;
+    policy().recordCollection(time, VM.activePlan.global().lastCollectionFullHeap());
   }
 
   /**
@@ -216,42 +202,8 @@ import org.vmmagic.unboxed.*;
       Log.write("GCLoad     "); Log.writeln(gcLoad);
     }
 
-    // (2) Find the 4 points surrounding gcLoad and liveRatio
-    int liveRatioUnder = 1;
-    int liveRatioAbove = function[0].length - 1;
-    int gcLoadUnder = 1;
-    int gcLoadAbove = function.length - 1;
-    while (true) {
-      if (function[0][liveRatioUnder+1] >= liveRatio) break;
-      liveRatioUnder++;
-    }
-    while (true) {
-      if (function[0][liveRatioAbove-1] <= liveRatio) break;
-      liveRatioAbove--;
-    }
-    while (true) {
-      if (function[gcLoadUnder+1][0] >= gcLoad) break;
-      gcLoadUnder++;
-    }
-    while (true) {
-      if (function[gcLoadAbove-1][0] <= gcLoad) break;
-      gcLoadAbove--;
-    }
-
-    // (3) Compute the heap change ratio
-    double factor = function[gcLoadUnder][liveRatioUnder];
-    double liveRatioFraction =
-      (liveRatio - function[0][liveRatioUnder]) /
-      (function[0][liveRatioAbove] - function[0][liveRatioUnder]);
-    double liveRatioDelta =
-      function[gcLoadUnder][liveRatioAbove] - function[gcLoadUnder][liveRatioUnder];
-    factor += (liveRatioFraction * liveRatioDelta);
-    double gcLoadFraction =
-      (gcLoad - function[gcLoadUnder][0]) /
-      (function[gcLoadAbove][0] - function[gcLoadUnder][0]);
-    double gcLoadDelta =
-      function[gcLoadAbove][liveRatioUnder] - function[gcLoadUnder][liveRatioUnder];
-    factor += (gcLoadFraction * gcLoadDelta);
+    // (2) Let the policy compute the heap change ratio
+    double factor = policy().heapChangeRatio(liveRatio, gcLoad);
 
     if (Options.verbose.getValue() > 2) {
       Log.write("Heap adjustment factor is ");
@@ -259,33 +211,4 @@ import org.vmmagic.unboxed.*;
     }
     return factor;
   }
-
-  /**
-   * Check that function satisfies the invariants
-   */
-  private static void sanityCheck() {
-    // Check live ratio
-    double[] liveRatio = function[0];
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio[1] == 0);
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio[liveRatio.length-1] == 1);
-    for (int i = 2; i < liveRatio.length; i++) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(liveRatio[i-1] < liveRatio[i]);
-      for (int j = 1; j < function.length; j++) {
-        if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(function[j][i] >= 1 || function[j][i] > liveRatio[i]);
-      }
-    }
-
-    // Check GC load
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(function[1][0] == 0);
-    int len = function.length;
-    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(function[len-1][0] == 1);
-    for (int i = 2; i < len; i++) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(function[i-1][0] < function[i][0]);
-    }
-
-    // Check that we have a rectangular matrix
-    for (int i = 1; i < function.length; i++) {
-      if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(function[i-1].length == function[i].length);
-    }
-  }
 }
@@ -0,0 +1,46 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import org.mmtk.utility.Constants;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A policy that decides how {@link HeapGrowthManager} grows and shrinks
+ * the heap.  The policy in use is chosen with the <code>heapSizing</code>
+ * option.
+ */
+@Uninterruptible
+public abstract class HeapSizingPolicy implements Constants {
+
+  /**
+   * Observe a collection.  Called at the end of every collection.
+   *
+   * @param pauseMillis The length of the pause, in milliseconds
+   * @param fullHeap Was the whole heap collected?
+   */
+  public void recordCollection(double pauseMillis, boolean fullHeap) {
+  }
+
+  /**
+   * Compute the factor by which to change the heap size.  Called at the
+   * end of a full heap collection.
+   *
+   * @param liveRatio The fraction of the heap in use after the collection
+   * @param gcLoad The fraction of time spent collecting since the last
+   * full heap collection
+   * @return The ratio of the new heap size to the current one
+   */
+  public abstract double heapChangeRatio(double liveRatio, double gcLoad);
+}
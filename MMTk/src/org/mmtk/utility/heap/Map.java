@@ -47,6 +47,15 @@ public class Map {
   private static int sharedDiscontigFLCount = 0;
   private static final FreeListPageResource[] sharedFLMap;
   private static int totalAvailableDiscontiguousChunks = 0;
+  /** The range of chunks available to discontiguous spaces */
+  private static int firstDiscontigChunk, lastDiscontigChunk;
+  /**
+   * For each free chunk whose memory may still be committed, one more
+   * than the value of <code>epoch</code> when it was freed; otherwise zero
+   */
+  private static final int[] freedAt;
+  /** The number of times free chunks have been considered for uncommitting */
+  private static int epoch = 0;
 
   private static final Lock lock = VM.newLock("Map lock");
 
@@ -62,6 +71,7 @@ public class Map {
     descriptorMap = new int[Space.MAX_CHUNKS];
     prevLink = new int[Space.MAX_CHUNKS];
     nextLink = new int[Space.MAX_CHUNKS];
+    freedAt = new int[Space.MAX_CHUNKS];
     spaceMap = new Space[Space.MAX_CHUNKS];
     regionMap = new GenericFreeList(Space.MAX_CHUNKS);
     globalPageMap = new GenericFreeList(1, 1, Space.MAX_SPACES);
@@ -126,6 +136,9 @@ public class Map {
       VM.assertions.fail("exiting");
     }
     totalAvailableDiscontiguousChunks -= chunks;
+    for (int offset = 0; offset < chunks; offset++) {
+      freedAt[chunk + offset] = 0;
+    }
     Address rtn = addressForChunkIndex(chunk);
     insert(rtn, Extent.fromIntZeroExtend(chunks<<Space.LOG_BYTES_IN_CHUNK), descriptor, space);
     if (head.isZero()) {
@@ -226,10 +239,36 @@ public class Map {
     for (int offset = 0; offset < chunks; offset++) {
       descriptorMap[chunk + offset] = 0;
       VM.barriers.objectArrayStoreNoGCBarrier(spaceMap, chunk + offset, null);
+      freedAt[chunk + offset] = epoch + 1;
     }
     return chunks;
   }
 
+  /**
+   * Return the memory of chunks that have stayed free for some number of
+   * collections to the operating system.  Called once at the end of each
+   * collection, which is what the count of collections is based on.  The
+   * chunks stay mapped, so reusing one costs only the page faults.
+   *
+   * @param collections The number of collections, including this one,
+   * at whose end a chunk must have been free
+   * @return The number of bytes uncommitted
+   */
+  public static int uncommitFreeChunks(int collections) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(collections > 0);
+    int bytes = 0;
+    lock.acquire();
+    epoch++;
+    for (int chunk = firstDiscontigChunk; chunk <= lastDiscontigChunk; chunk++) {
+      if (freedAt[chunk] != 0 && epoch + 1 - freedAt[chunk] >= collections) {
+        bytes += Mmapper.uncommit(addressForChunkIndex(chunk), Space.PAGES_IN_CHUNK);
+        freedAt[chunk] = 0;
+      }
+    }
+    lock.release();
+    return bytes;
+  }
+
   /**
    * Finalize the space map, establishing which virtual memory
    * is nailed down, and then placing the rest into a map to
@@ -242,6 +281,8 @@ public class Map {
     int firstChunk = getChunkIndex(startAddress);
     int lastChunk = getChunkIndex(Space.getDiscontigEnd());
     int unavailStartChunk = lastChunk + 1;
+    firstDiscontigChunk = firstChunk;
+    lastDiscontigChunk = lastChunk;
     int trailingChunks = Space.MAX_CHUNKS - unavailStartChunk;
     int pages = (1 + lastChunk - firstChunk) * Space.PAGES_IN_CHUNK;
     globalPageMap.resizeFreeList(pages, pages);
@@ -21,7 +21,8 @@ import org.vmmagic.unboxed.*;
 import org.vmmagic.pragma.*;
 
 /**
- * This class implements mmapping and protection of virtual memory.
+ * This class implements mmapping, protection and uncommitting of virtual
+ * memory.
  */
 @Uninterruptible public final class Mmapper implements Constants {
 
@@ -108,21 +109,39 @@ import org.vmmagic.pragma.*;
    * occurs at chunk granularity, not page granularity.<p>
    *
    * NOTE: There is a monotonicity assumption so that only updates require lock
-   * acquisition.
+   * acquisition: once a chunk is seen to be mapped it stays mapped, so
+   * the common case of a range that is already mapped takes no lock.
    * TODO: Fix the above to support unmapping.
    *
    * @param start The start of the range to be mapped.
    * @param pages The size of the range to be mapped, in pages
    */
+  @Inline
   public static void ensureMapped(Address start, int pages) {
     int startChunk = Conversions.addressToMmapChunksDown(start);
     int endChunk = Conversions.addressToMmapChunksUp(start.plus(Conversions.pagesToBytes(pages)));
     for (int chunk = startChunk; chunk < endChunk; chunk++) {
+      if (mapped[chunk] != MAPPED) {
+        mapChunks(chunk, endChunk);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Map or unprotect the chunks of a range that are not yet mapped,
+   * taking the lock once for the whole range.
+   *
+   * @param startChunk The first chunk that was seen not to be mapped
+   * @param endChunk The chunk after the last chunk in the range
+   */
+  @NoInline
+  private static void mapChunks(int startChunk, int endChunk) {
+    lock.acquire();
+    for (int chunk = startChunk; chunk < endChunk; chunk++) {
+      // might have become MAPPED here
       if (mapped[chunk] == MAPPED) continue;
       Address mmapStart = Conversions.mmapChunksToAddress(chunk);
-      lock.acquire();
-//      Log.writeln(mmapStart);
-      // might have become MAPPED here
       if (mapped[chunk] == UNMAPPED) {
         int errno = VM.memory.dzmmap(mmapStart, MMAP_CHUNK_BYTES);
         if (errno != 0) {
@@ -148,10 +167,11 @@ import org.vmmagic.pragma.*;
           }
         }
       }
+      /* Publish the state only once the mapping is in place: readers take no lock */
+      VM.memory.sync();
       mapped[chunk] = MAPPED;
-      lock.release();
     }
-
+    lock.release();
   }
 
   /**
@@ -186,6 +206,39 @@ import org.vmmagic.pragma.*;
     lock.release();
   }
 
+  /**
+   * Return the physical memory behind a range of pages to the operating
+   * system, leaving the range mapped.  Only whole mapped chunks are
+   * uncommitted; protected and unmapped chunks are left alone.
+   *
+   * @param start The start of the range, which must be chunk aligned
+   * @param pages The size of the range, in pages
+   * @return The number of bytes uncommitted
+   */
+  public static int uncommit(Address start, int pages) {
+    if (VM.VERIFY_ASSERTIONS) VM.assertions._assert(chunkAlignDown(start).EQ(start));
+    int startChunk = Conversions.addressToMmapChunksDown(start);
+    int endChunk = startChunk + Conversions.pagesToMmapChunksUp(pages);
+    int bytes = 0;
+    lock.acquire();
+    for (int chunk = startChunk; chunk < endChunk; chunk++) {
+      if (mapped[chunk] == MAPPED) {
+        Address mmapStart = Conversions.mmapChunksToAddress(chunk);
+        if (!VM.memory.uncommit(mmapStart, MMAP_CHUNK_BYTES)) {
+          lock.release();
+          VM.assertions.fail("Mmapper.uncommit failed");
+        }
+        if (verbose) {
+          Log.write("uncommit succeeded at chunk "); Log.write(chunk);  Log.write("  "); Log.write(mmapStart);
+          Log.write(" with len = "); Log.writeln(MMAP_CHUNK_BYTES);
+        }
+        bytes += MMAP_CHUNK_BYTES;
+      }
+    }
+    lock.release();
+    return bytes;
+  }
+
   /****************************************************************************
    * Utility functions
    */
@@ -14,6 +14,7 @@ package org.mmtk.utility.heap;
 
 import org.mmtk.utility.alloc.EmbeddedMetaData;
 import org.mmtk.utility.options.Options;
+import org.mmtk.utility.options.PreZero;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Conversions;
 import org.mmtk.utility.Constants;
@@ -33,6 +34,18 @@ import org.vmmagic.unboxed.*;
 public final class MonotonePageResource extends PageResource
   implements Constants {
 
+  /****************************************************************************
+   *
+   * Class variables
+   */
+
+  /** The number of pages zeroed ahead of the cursor at a time */
+  private static final int PRE_ZERO_STEP_PAGES = 16;
+
+  /** Every contiguous monotone resource, for the background zeroing thread */
+  private static final MonotonePageResource[] preZeroable = new MonotonePageResource[Space.MAX_SPACES];
+  private static int preZeroableCount = 0;
+
   /****************************************************************************
    *
    * Instance variables
@@ -41,6 +54,18 @@ public final class MonotonePageResource extends PageResource
   private Address sentinel;
   private final int metaDataPagesPerRegion;
   private Address currentChunk = Address.zero();
+  /** When above the cursor, the pages from the cursor up to here are known to be zero */
+  private Address zeroedLimit = Address.zero();
+  /** The cursor at the last reset, up to which pages may be zeroed ahead of demand */
+  private Address zeroHighWater = Address.zero();
+
+  /****************************************************************************
+   *
+   * Initialization
+   */
+  static {
+    Options.preZero = new PreZero();
+  }
 
   /**
    * Constructor
@@ -59,6 +84,7 @@ public final class MonotonePageResource extends PageResource
     this.cursor = start;
     this.sentinel = start.plus(bytes);
     this.metaDataPagesPerRegion = metaDataPagesPerRegion;
+    preZeroable[preZeroableCount++] = this;
   }
 
   /**
@@ -155,6 +181,7 @@ public final class MonotonePageResource extends PageResource
       rtn = cursor;
       tmp = cursor.plus(bytes);
       newChunk = true;
+      zeroedLimit = Address.zero();
     }
     if (VM.VERIFY_ASSERTIONS)
       VM.assertions._assert(rtn.GE(cursor) && rtn.LT(cursor.plus(bytes)));
@@ -163,12 +190,17 @@ public final class MonotonePageResource extends PageResource
       return Address.zero();
     } else {
       Address old = cursor;
+      /* Only the pages not already zeroed ahead of demand need zeroing */
+      Address zeroStart = old;
+      if (zeroedLimit.GT(old)) {
+        zeroStart = zeroedLimit.LT(tmp) ? zeroedLimit : tmp;
+      }
       cursor = tmp;
       commitPages(reservedPages, requiredPages);
       space.growSpace(old, bytes, newChunk);
       unlock();
       Mmapper.ensureMapped(old, requiredPages);
-      VM.memory.zero(old, bytes);
+      VM.memory.zero(zeroStart, tmp.diff(zeroStart).toWord().toExtent());
       VM.events.tracePageAcquired(space, rtn, requiredPages);
       return rtn;
     }
@@ -222,8 +254,61 @@ public final class MonotonePageResource extends PageResource
     lock();
     reserved = 0;
     committed = 0;
+    boolean preZero = contiguous && Options.preZero.getValue() && !Options.protectOnRelease.getValue();
+    zeroHighWater = preZero ? cursor : Address.zero();
     releasePages();
+    zeroedLimit = Address.zero();
+    unlock();
+    if (preZero && zeroHighWater.GT(start)) {
+      VM.collection.scheduleBackgroundZeroing();
+    }
+  }
+
+  /****************************************************************************
+   *
+   * Pre-zeroing
+   */
+
+  /**
+   * Zero one step of the pages released by the last reset of any
+   * contiguous monotone resource, ahead of the allocation cursor.
+   * Called repeatedly by the background zeroing thread.
+   *
+   * @return True if pages were zeroed, so there may be more to do
+   */
+  public static boolean zeroInBackground() {
+    for (int i = 0; i < preZeroableCount; i++) {
+      if (preZeroable[i].zeroAhead()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Zero the next few pages ahead of the cursor, up to the cursor at
+   * the last reset.  Those pages were in use before the reset, so they
+   * are mapped and zeroing them commits no new memory.  The lock is
+   * held while zeroing, which is short, so an allocation can never be
+   * handed pages that are being zeroed.
+   *
+   * @return True if pages were zeroed
+   */
+  private boolean zeroAhead() {
+    if (zeroHighWater.isZero()) return false;
+    lock();
+    Address from = zeroedLimit.GT(cursor) ? zeroedLimit : cursor;
+    Address to = from.plus(Conversions.pagesToBytes(PRE_ZERO_STEP_PAGES));
+    if (to.GT(zeroHighWater)) to = zeroHighWater;
+    if (from.GE(to)) {
+      zeroHighWater = Address.zero();
+      unlock();
+      return false;
+    }
+    VM.memory.zero(from, to.diff(from).toWord().toExtent());
+    zeroedLimit = to;
     unlock();
+    return true;
   }
 
   /**
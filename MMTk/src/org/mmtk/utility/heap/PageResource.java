@@ -33,7 +33,12 @@ import org.vmmagic.unboxed.*;
  * freelist variants, which reflect monotonic and ad hoc space usage
  * respectively.  Monotonic use is easier to manage, but is obviously
  * more restrictive (useful for copying collectors which allocate
- * monotonically before freeing the entire space and starting over).
+ * monotonically before freeing the entire space and starting over).<p>
+ *
+ * Every page request to a resource takes that resource's lock, so
+ * threads allocating pages in the same space serialize here; there is
+ * no per-thread cache of pages in front of the resource.  Thread-local
+ * allocators amortize this by taking pages in blocks or regions.
  */
 @Uninterruptible
 public abstract class PageResource implements Constants {
@@ -44,9 +49,6 @@ public abstract class PageResource implements Constants {
    */
   protected static final boolean ZERO_ON_RELEASE = false; // debugging
 
-  private static final Lock classLock;
-  private static long cumulativeCommitted = 0;
-
 
   /****************************************************************************
    *
@@ -56,6 +58,8 @@ public abstract class PageResource implements Constants {
   // page budgeting
   protected int reserved;
   protected int committed;
+  /** Pages ever committed by mutators, guarded by the lock */
+  private long cumulativeCommitted = 0;
 
   protected final boolean contiguous;
   protected final Space space;
@@ -69,7 +73,6 @@ public abstract class PageResource implements Constants {
    * Initialization
    */
   static {
-    classLock = VM.newLock("PageResource");
     Options.protectOnRelease = new ProtectOnRelease();
   }
 
@@ -134,8 +137,8 @@ public abstract class PageResource implements Constants {
    */
   @Inline
   public final int reservePages(int pages) {
-    lock();
     pages = adjustForMetaData(pages);
+    lock();
     reserved += pages;
     unlock();
     return pages;
@@ -204,7 +207,7 @@ public abstract class PageResource implements Constants {
     committed += actualPages;
     if (VM.activePlan.isMutator()) {
       // only count mutator pages
-      addToCommitted(actualPages);
+      cumulativeCommitted += actualPages;
     }
   }
 
@@ -223,22 +226,15 @@ public abstract class PageResource implements Constants {
   public final int committedPages() { return committed; }
 
   /**
-   * Return the cumulative number of committed pages
+   * Return the cumulative number of pages committed by mutators to
+   * this resource.  The count is kept per resource, under the lock
+   * already held when pages are committed, so that page allocation in
+   * different spaces does not serialize on a global lock.  It is read
+   * without the lock.
    *
    * @return The cumulative number of committed pages.
    */
-  public static long cumulativeCommittedPages() { return cumulativeCommitted; }
-
-  /**
-   * Add to the total cumulative committed page count.
-   *
-   * @param pages The number of pages to be added.
-   */
-  private static void addToCommitted(int pages) {
-    classLock.acquire();
-    cumulativeCommitted += pages;
-    classLock.release();
-  }
+  public final long cumulativeCommittedPages() { return cumulativeCommitted; }
 
   /**
    * Acquire the lock.
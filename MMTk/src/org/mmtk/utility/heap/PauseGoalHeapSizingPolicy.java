@@ -0,0 +1,131 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.heap;
+
+import org.mmtk.utility.Log;
+import org.mmtk.utility.options.Options;
+
+import org.vmmagic.pragma.*;
+
+/**
+ * A heap sizing policy that feeds back on the measured pauses and GC
+ * load, aiming to keep pauses below <code>maxPauseGoal</code> and the
+ * fraction of time spent collecting below <code>gcTimeRatio</code>.<p>
+ *
+ * The goals are met in order of priority.  A full heap collection whose
+ * pause overran the goal shrinks the heap in proportion to the overrun;
+ * otherwise a GC load above the target grows the heap in proportion to
+ * the excess; otherwise a GC load well below the target shrinks the heap
+ * a little to reduce the footprint.  Under a generational plan each
+ * nursery pause also scales the nursery limit towards the pause goal.
+ */
+@Uninterruptible
+public final class PauseGoalHeapSizingPolicy extends HeapSizingPolicy {
+
+  /** The most the heap shrinks at a time to meet the pause goal */
+  private static final double MIN_RATIO = 0.75;
+  /** The most the heap grows at a time to meet the GC load target */
+  private static final double MAX_RATIO = 1.5;
+  /** How far the heap shrinks when both goals are comfortably met */
+  private static final double FOOTPRINT_RATIO = 0.95;
+  /** The heap is never shrunk to less than this multiple of the live data */
+  private static final double MIN_HEADROOM = 1.2;
+  /** The most the nursery shrinks at a time to meet the pause goal */
+  private static final double MIN_NURSERY_RATIO = 0.5;
+  /** The rate at which the nursery grows while its pauses are short */
+  private static final double NURSERY_GROWTH = 1.1;
+  /** Pauses shorter than this fraction of the goal are short */
+  private static final double SLACK = 0.5;
+
+  private final boolean generational;
+  /** The longest pause since the last full heap collection, in ms */
+  private double worstPause;
+
+  /**
+   * Constructor
+   *
+   * @param generational Should the nursery be sized as well?
+   */
+  public PauseGoalHeapSizingPolicy(boolean generational) {
+    this.generational = generational;
+  }
+
+  @Override
+  public void recordCollection(double pauseMillis, boolean fullHeap) {
+    if (pauseMillis > worstPause) worstPause = pauseMillis;
+    if (generational && !fullHeap) sizeNursery(pauseMillis);
+  }
+
+  @Override
+  public double heapChangeRatio(double liveRatio, double gcLoad) {
+    double goal = pauseGoal();
+    double target = Options.gcTimeRatio.getValue();
+    double pause = worstPause;
+    worstPause = 0;
+
+    double ratio;
+    if (pause > goal) {
+      ratio = goal / pause;
+      if (ratio < MIN_RATIO) ratio = MIN_RATIO;
+    } else if (gcLoad > target) {
+      ratio = gcLoad / target;
+      if (ratio > MAX_RATIO) ratio = MAX_RATIO;
+    } else if (gcLoad < target * SLACK) {
+      ratio = FOOTPRINT_RATIO;
+    } else {
+      ratio = 1;
+    }
+    if (ratio < liveRatio * MIN_HEADROOM) ratio = liveRatio * MIN_HEADROOM;
+
+    if (Options.verbose.getValue() > 2) {
+      Log.write("Worst pause (ms) "); Log.writeln(pause);
+    }
+    return ratio;
+  }
+
+  /**
+   * Scale the nursery limit after a nursery collection: down in
+   * proportion to a pause that overran the goal, or up gradually while
+   * pauses stay well within it.  Survivors, and so nursery pauses, grow
+   * roughly with the nursery size.
+   *
+   * @param pauseMillis The pause of the nursery collection, in ms
+   */
+  private void sizeNursery(double pauseMillis) {
+    double goal = pauseGoal();
+    double scale;
+    if (pauseMillis > goal) {
+      scale = goal / pauseMillis;
+      if (scale < MIN_NURSERY_RATIO) scale = MIN_NURSERY_RATIO;
+    } else if (pauseMillis < goal * SLACK) {
+      scale = NURSERY_GROWTH;
+    } else {
+      return;
+    }
+    int oldPages = Options.nurserySize.getMaxNursery();
+    Options.nurserySize.setAdaptiveLimit((int) (oldPages * scale));
+    int newPages = Options.nurserySize.getMaxNursery();
+    if (Options.verbose.getValue() > 2 && newPages != oldPages) {
+      Log.write("GC Message: Nursery limit changed from "); Log.write(oldPages << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_KBYTE));
+      Log.write("KB to "); Log.write(newPages << (LOG_BYTES_IN_PAGE - LOG_BYTES_IN_KBYTE));
+      Log.writeln("KB");
+    }
+  }
+
+  /**
+   * @return The pause goal, in milliseconds
+   */
+  private static double pauseGoal() {
+    return Options.maxPauseGoal.getMicroseconds() / 1000.0;
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The number of threads that run finalizers.
+ */
+public final class FinalizerThreads extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public FinalizerThreads() {
+    super(Options.set, "Finalizer Threads",
+          "Number of threads to run finalize() methods",
+          1);
+  }
+
+  /**
+   * Only accept values of 1 or higher.
+   */
+  protected void validate() {
+    failIf(this.value < 1, "Must have at least one finalizer thread");
+  }
+}
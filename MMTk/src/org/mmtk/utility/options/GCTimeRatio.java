@@ -0,0 +1,35 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The fraction of time the pause-goal heap sizing policy aims to spend
+ * collecting.
+ */
+public final class GCTimeRatio extends org.vmutil.options.FloatOption {
+  /**
+   * Create the option.
+   */
+  public GCTimeRatio() {
+    super(Options.set, "GC Time Ratio",
+          "Grow the heap when more than this fraction of time is spent collecting, under the pause-goal heap sizing policy",
+          0.05f);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  protected void validate() {
+    failIf((this.value <= 0 || this.value >= 1.0), "Ratio must be a float between 0 and 1");
+  }
+}
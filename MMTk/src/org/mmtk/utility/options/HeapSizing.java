@@ -0,0 +1,33 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The policy used to grow and shrink a variable sized heap.
+ */
+public final class HeapSizing extends org.vmutil.options.EnumOption {
+
+  // enumeration values.
+  public final int LIVE_RATIO = 0;
+  public final int PAUSE_GOAL = 1;
+
+  /**
+   * Create the option.
+   */
+  public HeapSizing() {
+    super(Options.set, "Heap Sizing",
+          "Size the heap by live ratio and GC load, or to meet the max pause goal and GC time ratio",
+          new String[] {"live-ratio", "pause-goal"},
+          "live-ratio");
+  }
+}
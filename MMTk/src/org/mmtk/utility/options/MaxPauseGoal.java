@@ -0,0 +1,34 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The pause time the pause-goal heap sizing policy aims not to exceed.
+ */
+public final class MaxPauseGoal extends org.vmutil.options.MicrosecondsOption {
+  /**
+   * Create the option.
+   */
+  public MaxPauseGoal() {
+    super(Options.set, "Max Pause Goal",
+          "Try to keep collection pauses below this time when the pause-goal heap sizing policy is used",
+          200000);
+  }
+
+  /**
+   * Ensure the value is valid.
+   */
+  protected void validate() {
+    failIf(this.value <= 0, "Pause goal must be positive");
+  }
+}
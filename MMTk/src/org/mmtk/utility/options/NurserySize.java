@@ -22,6 +22,8 @@ public final class NurserySize {
   // values
   private FixedNursery fixedNursery;
   private BoundedNursery boundedNursery;
+  /** An upper bound set at run time by the heap sizing policy, in pages */
+  private int adaptiveLimit = Integer.MAX_VALUE;
 
   /**
    * Create the options.
@@ -38,7 +40,22 @@ public final class NurserySize {
    */
   @Uninterruptible
   public int getMaxNursery() {
-    return boundedNursery.getPages();
+    int max = boundedNursery.getPages();
+    if (adaptiveLimit >= max) return max;
+    int min = getMinNursery();
+    return adaptiveLimit > min ? adaptiveLimit : min;
+  }
+
+  /**
+   * Limit the nursery below the user's bound, as the heap sizing
+   * policy sees fit.  The limit never takes the nursery below its
+   * lower bound.
+   *
+   * @param pages The new limit, in pages
+   */
+  @Uninterruptible
+  public void setAdaptiveLimit(int pages) {
+    adaptiveLimit = pages;
   }
 
   /**
@@ -21,6 +21,7 @@ public final class Options {
   public static OptionSet set;
 
   /* Other options */
+  public static BackgroundSweep backgroundSweep;
   public static BoundedNursery boundedNursery;
   public static ConcurrentTrigger concurrentTrigger;
   public static CycleFilterThreshold cycleFilterThreshold;
@@ -37,6 +38,7 @@ public final class Options {
   public static DefragStress defragStress;
   public static EagerCompleteSweep eagerCompleteSweep;
   public static EagerMmapSpaces eagerMmapSpaces;
+  public static FinalizerThreads finalizerThreads;
   public static FixedNursery fixedNursery;
   public static FragmentationStats fragmentationStats;
   public static FullHeapSystemGC fullHeapSystemGC;
@@ -44,22 +46,28 @@ public final class Options {
   public static GCspyTileSize gcspyTileSize;
   public static GCspyWait gcspyWait;
   public static GCTimeCap gcTimeCap;
+  public static GCTimeRatio gcTimeRatio;
   public static GenCycleDetection genCycleDetection;
   public static HarnessAll harnessAll;
+  public static HeapSizing heapSizing;
   public static IgnoreSystemGC ignoreSystemGC;
   public static LineReuseRatio lineReuseRatio;
   public static MarkSweepMarkBits markSweepMarkBits;
+  public static MaxPauseGoal maxPauseGoal;
   public static MetaDataLimit metaDataLimit;
   public static NoFinalizer noFinalizer;
   public static NoReferenceTypes noReferenceTypes;
   public static NurserySize nurserySize;
   public static PerfEvents perfEvents;
+  public static PreZero preZero;
+  public static PrefetchTrace prefetchTrace;
   public static PrintPhaseStats printPhaseStats;
   public static ProtectOnRelease protectOnRelease;
   public static SanityCheck sanityCheck;
   public static StressFactor stressFactor;
   public static Threads threads;
   public static TraceRate traceRate;
+  public static UncommitAfter uncommitAfter;
   public static VariableSizeHeap variableSizeHeap;
   public static VerboseFragmentationStats verboseFragmentationStats;
   public static Verbose verbose;
@@ -0,0 +1,30 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * Should memory released by copying spaces be zeroed by a background
+ * thread ahead of allocation?  Only contiguous monotone page resources
+ * are zeroed ahead; pages from a free-list page resource, such as
+ * Immix blocks, are still zeroed when they are allocated.
+ */
+public final class PreZero extends org.vmutil.options.BooleanOption {
+  /**
+   * Create the option.
+   */
+  public PreZero() {
+    super(Options.set, "Pre Zero",
+          "Should memory released by contiguous copying spaces be zeroed by a background thread ahead of allocation (free-list spaces are still zeroed on allocation)",
+          false);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.mmtk.utility.options;
+
+/**
+ * The number of collections a chunk must stay free before its memory is
+ * returned to the operating system.
+ */
+public final class UncommitAfter extends org.vmutil.options.IntOption {
+  /**
+   * Create the option.
+   */
+  public UncommitAfter() {
+    super(Options.set, "Uncommit After",
+          "Return the memory of chunks that stay free for this many collections to the OS (0 to never do so)",
+          3);
+  }
+
+  /**
+   * Only accept non-negative values.
+   */
+  protected void validate() {
+    failIf(this.value < 0, "Must be zero or more collections");
+  }
+}
@@ -88,6 +88,18 @@ public class SizeCounter {
     volume.inc(value);
   }
 
+  /**
+   * Increment the counter by several units at once, as when a thread
+   * folds in counts it has gathered locally.
+   *
+   * @param units The number of units (events)
+   * @param value The total volume of those units
+   */
+  public void inc(int units, int value) {
+    this.units.inc(units);
+    volume.inc(value);
+  }
+
   /****************************************************************************
    *
    * Generic counter control methods: start, stop, print etc
@@ -113,6 +113,23 @@ import org.vmmagic.pragma.*;
   @Unpreemptible
   public abstract void resumeAllMutators();
 
+  /**
+   * Wake the background sweeper, if the VM provides one, to sweep the
+   * blocks the collection just finished has left unswept (see
+   * <code>SegregatedFreeListSpace.sweepInBackground()</code>).  Called
+   * during the collection.  Blocks left unswept are otherwise swept on
+   * demand by allocation, or at the start of the next collection.
+   */
+  public abstract void scheduleBackgroundSweep();
+
+  /**
+   * Wake the background zeroing thread, if the VM provides one, to zero
+   * the pages a copying space has just released ahead of allocation (see
+   * <code>MonotonePageResource.zeroInBackground()</code>).  Called during
+   * the collection.  Pages not zeroed ahead are zeroed by allocation.
+   */
+  public abstract void scheduleBackgroundZeroing();
+
   /**
    * Fail with an out of memory error.
    */
@@ -16,7 +16,11 @@ import org.mmtk.plan.TraceLocal;
 import org.vmmagic.pragma.Uninterruptible;
 
 /**
- * This class manages finalizable objects.
+ * This class manages finalizable objects.<p>
+ *
+ * <code>scan</code> and <code>forward</code> are called by every
+ * collector thread taking part in the collection, like those of
+ * {@link ReferenceProcessor}.
  */
 @Uninterruptible
 public abstract class FinalizableProcessor {
@@ -37,6 +41,9 @@ public abstract class FinalizableProcessor {
 
   /**
    * Iterate over and forward entries in the table.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery true if it is safe to only scan new references.
    */
   public abstract void forward(TraceLocal trace, boolean nursery);
 }
@@ -97,6 +97,18 @@ import org.vmmagic.pragma.*;
    */
   public abstract boolean munprotect(Address start, int size);
 
+  /**
+   * Returns the physical memory behind an area of virtual memory to the
+   * operating system.  The area stays mapped, and its contents are
+   * undefined until it is next written.
+   *
+   * @param start the address of the start of the area
+   * @param size the size, in bytes, of the area
+   * @return <code>true</code> if successful, otherwise
+   * <code>false</code>
+   */
+  public abstract boolean uncommit(Address start, int size);
+
   /**
    * Zero a region of memory.
    * @param start Start of address range (inclusive)
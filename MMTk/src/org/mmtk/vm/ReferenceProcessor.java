@@ -17,7 +17,13 @@ import org.vmmagic.pragma.Uninterruptible;
 
 /**
  * This class manages SoftReferences, WeakReferences, and
- * PhantomReferences.
+ * PhantomReferences.<p>
+ *
+ * <code>scan</code> and <code>forward</code> are called by every
+ * collector thread taking part in the collection, so that the
+ * implementation can divide the work among them.  An implementation
+ * that does not must do the work on one thread and have the others
+ * wait for it to finish.
  */
 @Uninterruptible
 public abstract class ReferenceProcessor {
@@ -40,6 +46,9 @@ public abstract class ReferenceProcessor {
 
   /**
    * Iterate over all references and forward.
+   *
+   * @param trace the thread local trace element.
+   * @param nursery true if it is safe to only scan new references.
    */
   public abstract void forward(TraceLocal trace, boolean nursery);
 
@@ -34,6 +34,13 @@ import org.vmmagic.pragma.Uninterruptible;
    */
   public abstract int increment();
 
+  /**
+   * Subtracts 1 from the counter.
+   *
+   * @return the value before the subtraction
+   */
+  public abstract int decrement();
+
   /**
    * Peek at the counter
    *
@@ -22,6 +22,7 @@ import org.jikesrvm.compilers.common.RuntimeCompiler;
 import org.jikesrvm.mm.mminterface.MemoryManager;
 
 import static org.jikesrvm.runtime.SysCall.sysCall;
+import org.jikesrvm.scheduler.LockProfiler;
 import org.jikesrvm.scheduler.RVMThread;
 
 /**
@@ -81,7 +82,8 @@ public class CommandLineArgs {
     BOOTCLASSPATH_P_ARG,
     BOOTCLASSPATH_A_ARG,
     BOOTSTRAP_CLASSES_ARG,
-    PROCESSORS_ARG
+    PROCESSORS_ARG,
+    LOCK_PROFILE_ARG
   }
 
   /** Represent a single command line prefix */
@@ -182,6 +184,7 @@ public class CommandLineArgs {
                                             new Prefix("-Xbootclasspath/a:", PrefixType.BOOTCLASSPATH_A_ARG),
                                             new Prefix("-X:vmClasses=", PrefixType.BOOTSTRAP_CLASSES_ARG),
                                             new Prefix("-X:processors=", PrefixType.PROCESSORS_ARG),
+                                            new Prefix("-X:lockProfile=", PrefixType.LOCK_PROFILE_ARG),
                                             new Prefix("-X:irc:help$", PrefixType.IRC_HELP_ARG),
                                             new Prefix("-X:irc$", PrefixType.IRC_HELP_ARG),
                                             new Prefix("-X:irc:", PrefixType.IRC_ARG),
@@ -553,6 +556,16 @@ public class CommandLineArgs {
           RVMThread.numProcessors = nProcs;
           break;
 
+        case LOCK_PROFILE_ARG: // "-X:lockProfile=<n>"
+          int period = primitiveParseInt(arg);
+          if (period < 0) {
+            VM.sysWrite("vm: ", p.value, " needs an argument that is at least 0");
+            VM.sysWriteln(", but found ", arg);
+            VM.sysExit(VM.EXIT_STATUS_BOGUS_COMMAND_LINE_ARG);
+          }
+          LockProfiler.samplePeriod = period;
+          break;
+
           // -------------------------------------------------------------------
           // GC options
           // -------------------------------------------------------------------
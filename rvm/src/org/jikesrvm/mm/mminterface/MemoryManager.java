@@ -41,6 +41,7 @@ import org.jikesrvm.runtime.BootRecord;
 import org.jikesrvm.runtime.Magic;
 import org.mmtk.plan.CollectorContext;
 import org.mmtk.plan.Plan;
+import org.mmtk.policy.SegregatedFreeListSpace;
 import org.mmtk.policy.Space;
 import org.mmtk.utility.Constants;
 import org.mmtk.utility.Memory;
@@ -48,6 +49,7 @@ import org.mmtk.utility.alloc.Allocator;
 import org.mmtk.utility.gcspy.GCspy;
 import org.mmtk.utility.heap.HeapGrowthManager;
 import org.mmtk.utility.heap.Mmapper;
+import org.mmtk.utility.heap.MonotonePageResource;
 import org.mmtk.utility.options.Options;
 import org.vmmagic.pragma.Entrypoint;
 import org.vmmagic.pragma.Inline;
@@ -973,6 +975,70 @@ public final class MemoryManager implements HeapLayoutConstants, Constants {
     return FinalizableProcessor.getForFinalize();
   }
 
+  /**
+   * Gets a batch of objects from the list of objects that are to be
+   * reclaimed and need to have their <code>finalize</code> method called.
+   *
+   * @param batch receives the objects needing to be finalized
+   * @return the number of objects stored in <code>batch</code>
+   */
+  @Unpreemptible("Non-preemptible but may yield if finalizable table is being grown")
+  public static int getFinalizedObjects(Object[] batch) {
+    return FinalizableProcessor.getForFinalize(batch);
+  }
+
+  /**
+   * @return the number of threads that should run finalizers
+   */
+  @Interruptible
+  public static int getFinalizerThreadCount() {
+    return Options.finalizerThreads.getValue();
+  }
+
+  /***********************************************************************
+   *
+   * Sweeping and zeroing
+   */
+
+  /**
+   * @return whether free-list spaces are swept by a background thread
+   */
+  @Interruptible
+  public static boolean backgroundSweep() {
+    return Options.backgroundSweep != null && Options.backgroundSweep.getValue();
+  }
+
+  /**
+   * Sweep one block left unswept by the last collection.  Called
+   * repeatedly by the sweeper thread.
+   *
+   * @return true if a block was swept, so there may be more to do
+   */
+  @Uninterruptible
+  public static boolean sweepInBackground() {
+    return SegregatedFreeListSpace.sweepInBackground();
+  }
+
+  /**
+   * @return whether pages released by copying spaces are zeroed by a
+   * background thread
+   */
+  @Interruptible
+  public static boolean preZero() {
+    return Options.preZero != null && Options.preZero.getValue();
+  }
+
+  /**
+   * Zero a few of the pages released by the last collection, ahead of
+   * allocation.  Called repeatedly by the zeroing thread.
+   *
+   * @return true if pages were zeroed, so there may be more to do
+   */
+  @Uninterruptible
+  public static boolean zeroInBackground() {
+    return MonotonePageResource.zeroInBackground();
+  }
+
   /***********************************************************************
    *
    * References
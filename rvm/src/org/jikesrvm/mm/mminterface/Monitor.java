@@ -13,7 +13,9 @@
 package org.jikesrvm.mm.mminterface;
 
 import org.jikesrvm.Callbacks;
+import org.jikesrvm.scheduler.RVMThread;
 import org.mmtk.utility.Constants;
+import org.mmtk.utility.options.Options;
 
 /**
  * This class allows JMTk to register call backs with Callbacks.
@@ -34,5 +36,6 @@ public class Monitor implements Constants, Callbacks.ExitMonitor {
    */
   public void notifyExit(int value) {
     Selected.Plan.get().notifyExit(value);
+    if (Options.verbose.getValue() >= 2) RVMThread.reportSafepointStats();
   }
 }
@@ -249,6 +249,7 @@ public class BootRecord {
   public Address sysMMapIP;
   public Address sysMMapErrnoIP;
   public Address sysMProtectIP;
+  public Address sysMAdviseDontNeedIP;
   public Address sysGetPageSizeIP;
 
   // threads
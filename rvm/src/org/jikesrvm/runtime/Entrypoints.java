@@ -380,6 +380,8 @@ public class Entrypoints {
 
   public static final RVMField latestContenderField =
       getField(org.jikesrvm.scheduler.SpinLock.class, "latestContender", org.jikesrvm.scheduler.RVMThread.class);
+  public static final RVMField nextFreeLockField =
+      getField(org.jikesrvm.scheduler.Lock.class, "nextFreeLock", org.jikesrvm.scheduler.Lock.class);
 
   public static final RVMField depthField = getField(org.jikesrvm.classloader.RVMType.class, "depth", int.class);
   public static final RVMField idField = getField(org.jikesrvm.classloader.RVMType.class, "id", int.class);
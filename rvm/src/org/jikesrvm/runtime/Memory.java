@@ -549,6 +549,20 @@ public class Memory {
     return SysCall.sysCall.sysMProtect(address, size, prot) == 0;
   }
 
+  /**
+   * Return the physical memory behind an address range to the operating
+   * system (madvise with MADV_DONTNEED).  The range stays mapped.
+   * @param address Start of address range (Address)
+   * @param size Size of address range
+   * @return true iff success
+   */
+  public static boolean uncommit(Address address, Extent size) {
+    if (VM.VerifyAssertions) {
+      VM._assert(isPageAligned(address) && isPageMultiple(size));
+    }
+    return SysCall.sysCall.sysMAdviseDontNeed(address, size) == 0;
+  }
+
   private static int pagesize = -1;
   private static int pagesizeLog = -1;
 
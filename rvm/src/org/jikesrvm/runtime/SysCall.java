@@ -152,6 +152,9 @@ public abstract class SysCall {
   @SysCallTemplate
   public abstract int sysMProtect(Address start, Extent length, int prot);
 
+  @SysCallTemplate
+  public abstract int sysMAdviseDontNeed(Address start, Extent length);
+
   @SysCallTemplate
   public abstract int sysGetPageSize();
 
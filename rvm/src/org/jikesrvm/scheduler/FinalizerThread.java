@@ -21,27 +21,37 @@ import org.vmmagic.pragma.NonMoving;
 /**
  * Finalizer thread.
  *
- * This thread is created by RVMThread.boot() at runtime startup.
- * Its "run" method does the following:
+ * A pool of these threads (one by default, see the
+ * <code>finalizerThreads</code> GC option) is created by RVMThread.boot()
+ * at runtime startup.  Its "run" method does the following:
  *    1. yield to the gcwaitqueue, until scheduled by g.c.
- *    2. For all objects on finalize Q, run the finalize() method
+ *    2. For all objects on finalize Q, run the finalize() method,
+ *       taking the objects from the queue in batches
  *    3. Go to 1
  *
- * This thread comes out of wait state via notify from the garbage collector
+ * These threads come out of wait state via notify from the garbage collector
  */
 @NonMoving
 public class FinalizerThread extends SystemThread {
 
   private static final int verbose = 0; // currently goes up to 2
 
+  /** The number of objects taken from the finalize Q at a time */
+  private static final int BATCH_SIZE = 64;
+
   private final Object[] none = new Object[0];
+  /** The objects this thread is finalizing */
+  private final Object[] batch = new Object[BATCH_SIZE];
   private static boolean shouldRun;
   private static Monitor schedLock;
 
   public static void boot() {
     schedLock=new Monitor();
-    FinalizerThread ft = new FinalizerThread();
-    ft.start();
+    int threads = MemoryManager.getFinalizerThreadCount();
+    for (int i = 0; i < threads; i++) {
+      FinalizerThread ft = (threads == 1) ? new FinalizerThread() : new FinalizerThread("FinalizerThread-" + i);
+      ft.start();
+    }
   }
 
   @Uninterruptible
@@ -53,10 +63,14 @@ public class FinalizerThread extends SystemThread {
   }
 
   public FinalizerThread() {
-    super("FinalizerThread");
+    this("FinalizerThread");
+  }
+
+  private FinalizerThread(String name) {
+    super(name);
   }
 
-  /** Run the finalizer thread (one per RVM) */
+  /** Run a finalizer thread */
   @Override
   public void run() {
     if (verbose >= 1) {
@@ -83,21 +97,25 @@ public class FinalizerThread extends SystemThread {
         }
 
         while (true) {
-          Object o = MemoryManager.getFinalizedObject();
-          if (o == null) break;
-          if (verbose >= 2) {
-            VM.sysWrite("FinalizerThread finalizing object at ", Magic.objectAsAddress(o));
-            VM.sysWrite(" of type ");
-            VM.sysWrite(Magic.getObjectType(o).getDescriptor());
-            VM.sysWriteln();
-          }
-          try {
-            java.lang.JikesRVMSupport.invokeFinalize(o);
-          } catch (Throwable e) {
-            if (verbose >= 1) VM.sysWriteln("Throwable exception caught for finalize call");
-          }
-          if (verbose >= 2) {
-            VM.sysWriteln("FinalizerThread done with object at ", Magic.objectAsAddress(o));
+          int count = MemoryManager.getFinalizedObjects(batch);
+          if (count == 0) break;
+          for (int i = 0; i < count; i++) {
+            Object o = batch[i];
+            batch[i] = null;
+            if (verbose >= 2) {
+              VM.sysWrite("FinalizerThread finalizing object at ", Magic.objectAsAddress(o));
+              VM.sysWrite(" of type ");
+              VM.sysWrite(Magic.getObjectType(o).getDescriptor());
+              VM.sysWriteln();
+            }
+            try {
+              java.lang.JikesRVMSupport.invokeFinalize(o);
+            } catch (Throwable e) {
+              if (verbose >= 1) VM.sysWriteln("Throwable exception caught for finalize call");
+            }
+            if (verbose >= 2) {
+              VM.sysWriteln("FinalizerThread done with object at ", Magic.objectAsAddress(o));
+            }
           }
         }
         if (verbose >= 1) VM.sysWriteln("FinalizerThread finished finalization");
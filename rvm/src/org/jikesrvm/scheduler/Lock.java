@@ -18,6 +18,7 @@ import org.jikesrvm.Constants;
 import org.jikesrvm.Services;
 import org.jikesrvm.objectmodel.ObjectModel;
 import org.jikesrvm.objectmodel.ThinLockConstants;
+import org.jikesrvm.runtime.Entrypoints;
 import org.jikesrvm.runtime.Magic;
 import org.vmmagic.pragma.Inline;
 import org.vmmagic.pragma.Interruptible;
@@ -84,21 +85,24 @@ java.lang.Object#notifyAll}, and {@link java.lang.Object#wait()}.
  <LI> <EM>What to do if the attempt to lock an object fails?</EM>  There
  are three choices: try again (busy-wait), yield and then try again,
  inflate the lock and yield to the heavy-weight lock's entering
- queue.  Currently, yield n times, then inflate.
- (This seemed to be best for the portBOB benchmark on a 12-way AIX
- SMP in the Fall of '99.)
+ queue.  Currently, spin for a while, yield n times, then inflate;
+ a contended heavy-weight lock is spun on before queueing.  Spin limits
+ adapt to how long the lock was held when spinning last succeeded:
+ per lock for heavy-weight locks and per thread for thin locks, whose
+ lock word has no room for it.
  <LI> <EM>When should a heavy-weight lock be deflated?</EM>  Currently,
  deflation happens when the lock is unlocked with nothing on either
- of its queues.  Probably better, would be to periodically (what
- period?) examine heavy-weight locks and deflate any that havn't
- been held for a while (how long?).
+ of its queues and no thread spinning on it.  Probably better, would
+ be to periodically (what period?) examine heavy-weight locks and
+ deflate any that havn't been held for a while (how long?).
  <LI> <EM>How many heavy-weight locks are needed? and how should they be
- managed?</EM>  Currently, each processor maintains a pool of free
- locks.  When a lock is inflated by a processor it is taken from
- this pool and when a lock is deflated by a processor it gets added
- to the processors pool.  Since inflation can happen on one processor
- and deflation on another, this can create an imbalance.  It might
- be worth investigating a scheme for balancing these local pools.
+ managed?</EM>  Currently, each thread maintains a small cache of free
+ locks.  When a lock is inflated by a thread it is taken from
+ this cache and when a lock is deflated by a thread it gets added
+ to the thread's cache.  Threads refill and overflow their caches
+ through a global free list that is updated with compare-and-swap
+ only, so inflation on one thread and deflation on another does not
+ serialize on a lock.
  <LI> <EM>Is there any advantage to using the {@link SpinLock#tryLock}
  method?</EM>
  </OL>
@@ -144,11 +148,18 @@ public final class Lock implements Constants {
    */
   private static final boolean tentativeMicrolocking = false;
 
+  /** The spin limit of a lock that has not yet been contended */
+  static final int INITIAL_SPIN_LIMIT = 256;
+  /** Spin at least this long, so that a limit can grow again */
+  static final int MIN_SPIN_LIMIT = 16;
+  /** Never spin longer than this before yielding or queueing */
+  static final int MAX_SPIN_LIMIT = 8192;
+
   // Heavy lock table.
 
   /** The table of locks. */
   private static Lock[][] locks;
-  /** Used during allocation of locks within the table. */
+  /** Used during allocation of new locks within the table. */
   private static final SpinLock lockAllocationMutex = new SpinLock();
   /** The number of chunks in the spine that have been physically allocated */
   private static int chunksAllocated;
@@ -158,13 +169,20 @@ public final class Lock implements Constants {
 
   // Global free list.
 
-  /** A global lock free list head */
-  private static Lock globalFreeLock;
-  /** the number of locks held on the global free list. */
+  /**
+   * The head of the global free list is this lock's free list pointer.  It
+   * is only changed by compare-and-swap: locks are pushed, and a thread
+   * refilling its cache takes the whole list at once, so the list does not
+   * suffer from the ABA problem.
+   */
+  private static final Lock globalFreeList = new Lock();
+  /** The maximum number of free locks cached by a thread */
+  private static final int THREAD_CACHE_SIZE = 8;
+  /** the number of locks held on the global free list (approximate). */
   private static int globalFreeLocks;
   /** the total number of allocation operations. */
   private static int globalLocksAllocated;
-  /** the total number of free operations. */
+  /** the total number of locks returned to the global free list (approximate). */
   private static int globalLocksFreed;
 
   // Statistics
@@ -175,6 +193,10 @@ public final class Lock implements Constants {
   public static int unlockOperations;
   /** Number of deflations */
   public static int deflations;
+  /** Number of spins that ended with the lock released */
+  public static int spinSuccesses;
+  /** Number of spins that gave up */
+  public static int spinFailures;
 
   /****************************************************************************
    * Instance
@@ -182,8 +204,9 @@ public final class Lock implements Constants {
 
   /** The object being locked (if any). */
   protected Object lockedObject;
-  /** The id of the thread that owns this lock (if any). */
-  protected int ownerId;
+  /** The id of the thread that owns this lock (if any).  Read without the
+   * mutex by threads spinning on the lock. */
+  protected volatile int ownerId;
   /** The number of times the owning thread (if any) has acquired this lock. */
   protected int recursionCount;
   /** A spin lock to handle contention for the data structures of this lock. */
@@ -198,6 +221,10 @@ public final class Lock implements Constants {
   ThreadQueue entering;
   /** Queue for waiting on a notify, guarded by mutex as well. */
   ThreadQueue waiting;
+  /** How long to spin before queueing; adapted by {@link #adaptSpinLimit} */
+  private int spinLimit = INITIAL_SPIN_LIMIT;
+  /** Number of threads spinning on this lock, guarded by mutex. */
+  private int spinners;
 
   /**
    * A heavy weight lock to handle extreme contention and wait/notify
@@ -243,6 +270,20 @@ public final class Lock implements Constants {
       ownerId = threadId;
       recursionCount = 1;
     } else {
+      // contended: spin while the owner may be about to release the lock,
+      // then queue
+      if (LockProfiler.enabled) LockProfiler.contending();
+      spinWhileOwned();
+      if (lockedObject != o) { // deflated while we spun
+        mutex.unlock();
+        return false;
+      }
+      if (ownerId == 0) {
+        ownerId = threadId;
+        recursionCount = 1;
+        mutex.unlock();
+        return true;
+      }
       entering.enqueue(me);
       mutex.unlock();
       me.monitor().lockNoHandshake();
@@ -283,7 +324,7 @@ public final class Lock implements Constants {
     if (STATS) unlockOperations++;
     ownerId = 0;
     RVMThread toAwaken = entering.dequeue();
-    if (toAwaken == null && entering.isEmpty() && waiting.isEmpty()) { // heavy lock can be deflated
+    if (toAwaken == null && entering.isEmpty() && waiting.isEmpty() && spinners == 0) { // heavy lock can be deflated
       // Possible project: decide on a heuristic to control when lock should be deflated
       Offset lockOffset = Magic.getObjectType(o).getThinLockOffset();
       if (!lockOffset.isMax()) { // deflate heavy lock
@@ -297,6 +338,52 @@ public final class Lock implements Constants {
     }
   }
 
+  /**
+   * Spin, with the mutex released, until this lock's owner releases it or
+   * the spin limit is reached.  The lock is not deflated while a thread
+   * spins on it.  Note: the mutex is held on entry and on return.
+   */
+  @Unpreemptible
+  private void spinWhileOwned() {
+    int limit = spinLimit;
+    spinners++;
+    mutex.unlock();
+    int spins = 0;
+    while (spins < limit && ownerId != 0) {
+      Magic.pause();
+      spins++;
+    }
+    mutex.lock();
+    spinners--;
+    spinLimit = adaptSpinLimit(limit, spins, ownerId == 0);
+  }
+
+  /**
+   * Adapt a spin limit to the outcome of a spin.  When the lock was
+   * released the limit grows to twice the time the lock was still held,
+   * which approximates the hold time; when spinning gave up the limit is
+   * halved, so that threads contending for long-held locks soon queue or
+   * yield instead.
+   *
+   * @param limit the limit that the spin used
+   * @param spins how long the spin lasted
+   * @param released whether the lock was released during the spin
+   * @return the new limit
+   */
+  @Inline
+  static int adaptSpinLimit(int limit, int spins, boolean released) {
+    if (released) {
+      if (STATS) spinSuccesses++;
+      int target = spins << 1;
+      if (target < limit) return limit;
+      return target < MAX_SPIN_LIMIT ? target : MAX_SPIN_LIMIT;
+    } else {
+      if (STATS) spinFailures++;
+      int target = limit >> 1;
+      return target > MIN_SPIN_LIMIT ? target : MIN_SPIN_LIMIT;
+    }
+  }
+
   /**
    * Disassociates this heavy-weight lock from the indicated object.
    * This lock is not held, nor are any threads on its queues.  Note:
@@ -451,7 +538,7 @@ public final class Lock implements Constants {
 
   /**
    * Delivers up an unassigned heavy-weight lock.  Locks are allocated
-   * from processor specific regions or lists, so normally no synchronization
+   * from thread specific caches, so normally no synchronization
    * is required to obtain a lock.
    *
    * Collector threads cannot use heavy-weight locks.
@@ -461,9 +548,15 @@ public final class Lock implements Constants {
   @UnpreemptibleNoWarn("The caller is prepared to lose control when it allocates a lock")
   static Lock allocate() {
     RVMThread me=RVMThread.getCurrentThread();
-    if (me.cachedFreeLock != null) {
-      Lock l = me.cachedFreeLock;
-      me.cachedFreeLock = null;
+    Lock l = me.cachedFreeLocks;
+    if (l == null) {
+      l = refillCache(me);
+    }
+    if (l != null) {
+      me.cachedFreeLocks = l.nextFreeLock;
+      me.numCachedFreeLocks--;
+      l.nextFreeLock = null;
+      l.active = true;
       if (trace) {
         VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
                       ", a cached free lock from Thread #",me.getThreadSlot());
@@ -471,94 +564,139 @@ public final class Lock implements Constants {
       return l;
     }
 
-    Lock l = null;
-    while (l == null) {
-      if (globalFreeLock != null) {
-        lockAllocationMutex.lock();
-        l = globalFreeLock;
-        if (l != null) {
-          globalFreeLock = l.nextFreeLock;
-          l.nextFreeLock = null;
-          l.active = true;
-          globalFreeLocks--;
-        }
-        lockAllocationMutex.unlock();
-        if (trace && l!=null) {
-          VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
-                        " from the global freelist for Thread #",me.getThreadSlot());
-        }
-      } else {
-        l = new Lock(); // may cause thread switch (and processor loss)
-        lockAllocationMutex.lock();
-        if (globalFreeLock == null) {
-          // ok, it's still correct for us to be adding a new lock
-          if (nextLockIndex >= MAX_LOCKS) {
-            VM.sysWriteln("Too many fat locks"); // make MAX_LOCKS bigger? we can keep going??
-            VM.sysFail("Exiting VM with fatal error");
-          }
-          l.index = nextLockIndex++;
-          globalLocksAllocated++;
-        } else {
-          l = null; // someone added to the freelist, try again
-        }
-        lockAllocationMutex.unlock();
-        if (l != null) {
-          if (l.index >= numLocks()) {
-            /* We need to grow the table */
-            growLocks(l.index);
-          }
-          addLock(l);
-          l.active = true;
-          /* make sure other processors see lock initialization.
-           * Note: Derek and I BELIEVE that an isync is not required in the other processor because the lock is newly allocated - Bowen */
-          Magic.sync();
-        }
-        if (trace && l!=null) {
-          VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
-                        ", a freshly allocated lock for Thread #",
-                        me.getThreadSlot());
-        }
-      }
+    l = new Lock(); // may cause thread switch (and processor loss)
+    lockAllocationMutex.lock();
+    if (nextLockIndex >= MAX_LOCKS) {
+      VM.sysWriteln("Too many fat locks"); // make MAX_LOCKS bigger? we can keep going??
+      VM.sysFail("Exiting VM with fatal error");
+    }
+    l.index = nextLockIndex++;
+    globalLocksAllocated++;
+    lockAllocationMutex.unlock();
+    if (l.index >= numLocks()) {
+      /* We need to grow the table */
+      growLocks(l.index);
+    }
+    addLock(l);
+    l.active = true;
+    /* make sure other processors see lock initialization.
+     * Note: Derek and I BELIEVE that an isync is not required in the other processor because the lock is newly allocated - Bowen */
+    Magic.sync();
+    if (trace) {
+      VM.sysWriteln("Lock.allocate: returning ",Magic.objectAsAddress(l),
+                    ", a freshly allocated lock for Thread #",
+                    me.getThreadSlot());
     }
     return l;
   }
 
+  /**
+   * Refill a thread's empty cache from the global free list.  The whole
+   * list is taken; all but the first {@link #THREAD_CACHE_SIZE} locks are
+   * then given back.
+   *
+   * @param me the current thread
+   * @return the refilled cache, or <code>null</code> if the global free list
+   * was empty
+   */
+  private static Lock refillCache(RVMThread me) {
+    Offset headOffset = Entrypoints.nextFreeLockField.getOffset();
+    Lock head;
+    do {
+      head = globalFreeList.nextFreeLock;
+      if (head == null) return null;
+    } while (!Synchronization.tryCompareAndSwap(globalFreeList, headOffset, head, null));
+    Magic.isync();
+    Lock tail = head;
+    int n = 1;
+    while (n < THREAD_CACHE_SIZE && tail.nextFreeLock != null) {
+      tail = tail.nextFreeLock;
+      n++;
+    }
+    Lock rest = tail.nextFreeLock;
+    tail.nextFreeLock = null;
+    globalFreeLocks -= n;
+    if (rest != null) {
+      /* Usually nobody has freed a lock since we emptied the list */
+      if (!Synchronization.tryCompareAndSwap(globalFreeList, headOffset, null, rest)) {
+        push(rest);
+      }
+    }
+    me.cachedFreeLocks = head;
+    me.numCachedFreeLocks = n;
+    if (trace) {
+      VM.sysWriteln("Lock.refillCache: took ",n," locks from the global freelist for Thread #",
+                    me.getThreadSlot());
+    }
+    return head;
+  }
+
   /**
    * Recycles an unused heavy-weight lock.  Locks are deallocated
-   * to processor specific lists, so normally no synchronization
-   * is required to obtain or release a lock.
+   * to thread specific caches, so normally no synchronization
+   * is required to release a lock.
    */
   protected static void free(Lock l) {
     l.active = false;
     RVMThread me = RVMThread.getCurrentThread();
-    if (me.cachedFreeLock == null) {
+    if (me.numCachedFreeLocks < THREAD_CACHE_SIZE) {
       if (trace) {
-        VM.sysWriteln("Lock.free: setting ",Magic.objectAsAddress(l),
-                      " as the cached free lock for Thread #",
+        VM.sysWriteln("Lock.free: caching ",Magic.objectAsAddress(l),
+                      " as a free lock for Thread #",
                       me.getThreadSlot());
       }
-      me.cachedFreeLock = l;
+      l.nextFreeLock = me.cachedFreeLocks;
+      me.cachedFreeLocks = l;
+      me.numCachedFreeLocks++;
     } else {
       if (trace) {
         VM.sysWriteln("Lock.free: returning ",Magic.objectAsAddress(l),
                       " to the global freelist for Thread #",
                       me.getThreadSlot());
       }
-      returnLock(l);
+      l.nextFreeLock = null;
+      returnLocks(l);
     }
   }
-  static void returnLock(Lock l) {
+
+  /**
+   * Return a list of free locks to the global free list.
+   *
+   * @param l the first lock of the list, linked through the free list pointers
+   */
+  static void returnLocks(Lock l) {
     if (trace) {
-      VM.sysWriteln("Lock.returnLock: returning ",Magic.objectAsAddress(l),
+      VM.sysWriteln("Lock.returnLocks: returning ",Magic.objectAsAddress(l),
                     " to the global freelist for Thread #",
                     RVMThread.getCurrentThreadSlot());
     }
-    lockAllocationMutex.lock();
-    l.nextFreeLock = globalFreeLock;
-    globalFreeLock = l;
-    globalFreeLocks++;
-    globalLocksFreed++;
-    lockAllocationMutex.unlock();
+    int n = push(l);
+    globalFreeLocks += n;
+    globalLocksFreed += n;
+  }
+
+  /**
+   * Push a list of free locks onto the global free list.
+   *
+   * @param l the first lock of the list, linked through the free list pointers
+   * @return the number of locks pushed
+   */
+  private static int push(Lock l) {
+    Lock tail = l;
+    int n = 1;
+    while (tail.nextFreeLock != null) {
+      if (VM.VerifyAssertions) VM._assert(tail.mutex.latestContender != RVMThread.getCurrentThread());
+      tail = tail.nextFreeLock;
+      n++;
+    }
+    Offset headOffset = Entrypoints.nextFreeLockField.getOffset();
+    Lock head;
+    do {
+      head = globalFreeList.nextFreeLock;
+      tail.nextFreeLock = head;
+      Magic.sync(); // publish the list before it becomes reachable
+    } while (!Synchronization.tryCompareAndSwap(globalFreeList, headOffset, head, l));
+    return n;
   }
 
   /**
@@ -679,6 +817,7 @@ public final class Lock implements Constants {
    */
   @Interruptible
   public static void boot() {
+    LockProfiler.boot();
     if (STATS) {
       Callbacks.addExitMonitor(new Lock.ExitMonitor());
       Callbacks.addAppRunStartMonitor(new Lock.AppRunStartMonitor());
@@ -693,6 +832,8 @@ public final class Lock implements Constants {
       lockOperations = 0;
       unlockOperations = 0;
       deflations = 0;
+      spinSuccesses = 0;
+      spinFailures = 0;
 
       ThinLock.notifyAppRunStart("", 0);
     }
@@ -717,6 +858,11 @@ public final class Lock implements Constants {
       VM.sysWrite("FatLocks: ");
       VM.sysWrite(deflations);
       VM.sysWrite(" deflations\n");
+      VM.sysWrite("Spins: ");
+      VM.sysWrite(spinSuccesses);
+      VM.sysWrite(" released, ");
+      VM.sysWrite(spinFailures);
+      VM.sysWrite(" gave up\n");
 
       ThinLock.notifyExit(totalLocks);
       VM.sysWriteln();
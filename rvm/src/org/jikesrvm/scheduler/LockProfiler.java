@@ -0,0 +1,288 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import static org.jikesrvm.ArchitectureSpecific.StackframeLayoutConstants.INVISIBLE_METHOD_ID;
+import static org.jikesrvm.ArchitectureSpecific.StackframeLayoutConstants.STACKFRAME_SENTINEL_FP;
+
+import org.jikesrvm.Callbacks;
+import org.jikesrvm.VM;
+import org.jikesrvm.classloader.MemberReference;
+import org.jikesrvm.classloader.TypeReference;
+import org.jikesrvm.compilers.baseline.BaselineCompiledMethod;
+import org.jikesrvm.compilers.common.CompiledMethod;
+import org.jikesrvm.compilers.common.CompiledMethods;
+import org.jikesrvm.compilers.opt.runtimesupport.OptCompiledMethod;
+import org.jikesrvm.compilers.opt.runtimesupport.OptEncodedCallSiteTree;
+import org.jikesrvm.compilers.opt.runtimesupport.OptMachineCodeMap;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.jikesrvm.objectmodel.JavaHeader;
+import org.jikesrvm.objectmodel.ObjectModel;
+import org.jikesrvm.runtime.Magic;
+import org.jikesrvm.runtime.Time;
+import org.vmmagic.pragma.Inline;
+import org.vmmagic.pragma.Interruptible;
+import org.vmmagic.pragma.NoInline;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.unboxed.Address;
+import org.vmmagic.unboxed.Offset;
+
+/**
+ * A sampling profiler for contended monitors, enabled with
+ * <code>-X:lockProfile=&lt;n&gt;</code>.<p>
+ *
+ * Every inflation and every contended acquisition is counted, along with
+ * the time spent acquiring contended locks.  One in <i>n</i> contended
+ * acquisitions is also attributed to its lock site: the first method and
+ * bytecode index up the stack, found through the compiled method's maps,
+ * that is not part of the locking code itself.  The sites are reported,
+ * ranked by the time spent waiting at them, when the VM exits and when a
+ * debug dump is requested.<p>
+ *
+ * The counters are updated without synchronization and may miss a few
+ * events; the site table is guarded by a spin lock taken only for samples.
+ */
+@Uninterruptible
+public final class LockProfiler {
+
+  /** Attribute one in this many contended acquisitions to a site; zero disables profiling */
+  public static int samplePeriod = 0;
+
+  /** Is the profiler running? */
+  static boolean enabled;
+
+  /** The capacity of the site table, a power of two */
+  private static final int MAX_SITES = 1 << 10;
+  /** The number of sites in the report */
+  private static final int REPORT_SITES = 20;
+
+  /** The classes whose frames belong to the locking code */
+  private static final TypeReference[] lockingTypes = {
+    TypeReference.findOrCreate(ThinLock.class),
+    TypeReference.findOrCreate(Lock.class),
+    TypeReference.findOrCreate(LockProfiler.class),
+    TypeReference.findOrCreate(ObjectModel.class),
+    TypeReference.findOrCreate(JavaHeader.class)
+  };
+
+  // Totals
+
+  /** Number of locks inflated */
+  private static int inflations;
+  /** Number of contended acquisitions */
+  private static int contendedAcquisitions;
+  /** Time spent in contended acquisitions, in nanoseconds */
+  private static long totalWaitTime;
+  /** Number of samples that found no site, or no room for it */
+  private static int lostSamples;
+
+  // Site table, keyed by method reference id and bytecode index
+
+  private static final SpinLock sitesLock = new SpinLock();
+  private static int numSites;
+  /** Method reference id of each site plus one; zero marks an empty entry */
+  private static int[] siteMethods;
+  private static int[] siteBytecodeIndexes;
+  private static int[] siteInflations;
+  private static int[] siteAcquisitions;
+  private static long[] siteWaitTimes;
+
+  /**
+   * Allocate the site table and register the report if profiling was
+   * requested on the command line.
+   */
+  @Interruptible
+  static void boot() {
+    if (samplePeriod <= 0) return;
+    siteMethods = new int[MAX_SITES];
+    siteBytecodeIndexes = new int[MAX_SITES];
+    siteInflations = new int[MAX_SITES];
+    siteAcquisitions = new int[MAX_SITES];
+    siteWaitTimes = new long[MAX_SITES];
+    Callbacks.addExitMonitor(new LockProfiler.ExitMonitor());
+    enabled = true;
+  }
+
+  /**
+   * A lock has been inflated.
+   */
+  static void inflated() {
+    inflations++;
+  }
+
+  /**
+   * The current thread has started to contend for a lock.  Only the
+   * first call in an acquisition reads the clock, and uncontended
+   * acquisitions never call this, so they are not slowed down.
+   */
+  @Inline
+  static void contending() {
+    RVMThread me = RVMThread.getCurrentThread();
+    if (me.lockContendedSince == 0) {
+      me.lockContendedSince = Time.nanoTime();
+    }
+  }
+
+  /**
+   * A lock has been acquired after contending for it.
+   *
+   * @param start when the thread started to contend for the lock, from
+   * {@link Time#nanoTime}
+   * @param inflated whether the lock was inflated by this acquisition
+   */
+  @NoInline
+  static void contended(long start, boolean inflated) {
+    long wait = Time.nanoTime() - start;
+    int n = ++contendedAcquisitions;
+    totalWaitTime += wait;
+    if (n % samplePeriod == 0) {
+      sample(wait, inflated);
+    }
+  }
+
+  /**
+   * Attribute a contended acquisition to the innermost logical frame on
+   * the stack that is outside the locking code.
+   */
+  private static void sample(long wait, boolean inflated) {
+    Address fp = Magic.getFramePointer();
+    Address ip = Magic.getReturnAddress(fp);
+    fp = Magic.getCallerFramePointer(fp);
+    while (Magic.getCallerFramePointer(fp).NE(STACKFRAME_SENTINEL_FP)) {
+      if (!MemoryManager.addressInVM(ip)) break; // native frame
+      int compiledMethodId = Magic.getCompiledMethodID(fp);
+      if (compiledMethodId != INVISIBLE_METHOD_ID) {
+        CompiledMethod compiledMethod = CompiledMethods.getCompiledMethod(compiledMethodId);
+        if (compiledMethod == null || compiledMethod.getCompilerType() == CompiledMethod.TRAP) break;
+        Offset instructionOffset = compiledMethod.getInstructionOffset(ip);
+        if (VM.BuildForOptCompiler && compiledMethod.getCompilerType() == CompiledMethod.OPT) {
+          // Opt stack frames may contain multiple inlined methods.
+          OptMachineCodeMap map = ((OptCompiledMethod) compiledMethod).getMCMap();
+          int iei = map.getInlineEncodingForMCOffset(instructionOffset);
+          if (iei >= 0) {
+            int[] inlineEncoding = map.inlineEncoding;
+            int bci = map.getBytecodeIndexForMCOffset(instructionOffset);
+            for (; iei >= 0; iei = OptEncodedCallSiteTree.getParent(iei, inlineEncoding)) {
+              int mid = OptEncodedCallSiteTree.getMethodID(iei, inlineEncoding);
+              if (!isLockingCode(mid)) {
+                record(mid, bci, wait, inflated);
+                return;
+              }
+              if (iei > 0) {
+                bci = OptEncodedCallSiteTree.getByteCodeOffset(iei, inlineEncoding);
+              }
+            }
+          }
+        } else {
+          int mid = compiledMethod.getMethod().getMemberRef().getId();
+          if (!isLockingCode(mid)) {
+            int bci = -1;
+            if (compiledMethod.getCompilerType() == CompiledMethod.BASELINE) {
+              bci = ((BaselineCompiledMethod) compiledMethod).findBytecodeIndexForInstruction(instructionOffset);
+            }
+            record(mid, bci, wait, inflated);
+            return;
+          }
+        }
+      }
+      ip = Magic.getReturnAddress(fp);
+      fp = Magic.getCallerFramePointer(fp);
+    }
+    lostSamples++;
+  }
+
+  /**
+   * @param mid a method reference id
+   * @return whether the method belongs to the locking code
+   */
+  private static boolean isLockingCode(int mid) {
+    TypeReference type = MemberReference.getMemberRef(mid).getType();
+    for (int i = 0; i < lockingTypes.length; i++) {
+      if (lockingTypes[i] == type) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Add a sample to the site table.
+   */
+  private static void record(int mid, int bci, long wait, boolean inflated) {
+    int key = mid + 1;
+    sitesLock.lock();
+    int i = (key * 31 + bci) & (MAX_SITES - 1);
+    int probes = 0;
+    while (siteMethods[i] != 0 && (siteMethods[i] != key || siteBytecodeIndexes[i] != bci)) {
+      if (++probes == MAX_SITES) {
+        lostSamples++;
+        sitesLock.unlock();
+        return;
+      }
+      i = (i + 1) & (MAX_SITES - 1);
+    }
+    if (siteMethods[i] == 0) {
+      siteMethods[i] = key;
+      siteBytecodeIndexes[i] = bci;
+      numSites++;
+    }
+    siteAcquisitions[i]++;
+    siteWaitTimes[i] += wait;
+    if (inflated) siteInflations[i]++;
+    sitesLock.unlock();
+  }
+
+  /**
+   * Print the totals and the sites with the most sampled waiting time.
+   */
+  public static void report() {
+    if (!enabled) return;
+    VM.sysWriteln("Lock contention profile (one in ", samplePeriod, " contended acquisitions sampled):");
+    VM.sysWrite("  inflations ", inflations);
+    VM.sysWrite(", contended acquisitions ", contendedAcquisitions);
+    VM.sysWriteln(", wait ms ", totalWaitTime / 1000000);
+    sitesLock.lock();
+    VM.sysWrite("  sites ", numSites);
+    VM.sysWriteln(", lost samples ", lostSamples);
+    long bound = Long.MAX_VALUE;
+    int boundIndex = -1;
+    for (int rank = 1; rank <= REPORT_SITES; rank++) {
+      /* Select the next site in order of decreasing wait time, then index */
+      int best = -1;
+      for (int i = 0; i < MAX_SITES; i++) {
+        if (siteMethods[i] == 0) continue;
+        long w = siteWaitTimes[i];
+        if (w > bound || (w == bound && i <= boundIndex)) continue;
+        if (best < 0 || w > siteWaitTimes[best]) best = i;
+      }
+      if (best < 0) break;
+      bound = siteWaitTimes[best];
+      boundIndex = best;
+      VM.sysWrite("  ", rank);
+      VM.sysWrite(". ");
+      VM.sysWrite(MemberReference.getMemberRef(siteMethods[best] - 1));
+      VM.sysWrite(" bci ", siteBytecodeIndexes[best]);
+      VM.sysWrite(": acquisitions ", siteAcquisitions[best]);
+      VM.sysWrite(", inflations ", siteInflations[best]);
+      VM.sysWriteln(", wait us ", siteWaitTimes[best] / 1000);
+    }
+    sitesLock.unlock();
+  }
+
+  /**
+   * Report the profile at the end of execution.
+   */
+  private static final class ExitMonitor implements Callbacks.ExitMonitor {
+    public void notifyExit(int value) {
+      report();
+    }
+  }
+}
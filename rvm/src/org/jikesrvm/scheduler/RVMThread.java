@@ -623,10 +623,26 @@ public final class RVMThread extends ThreadContext {
   private int uncaughtExceptionCount = 0;
 
   /**
-   * A cached free lock. Not a free list; this will only ever contain 0 or 1
-   * locks!
+   * This thread's cache of free locks, linked through their free list
+   * pointers.  Only this thread touches it.
    */
-  public Lock cachedFreeLock;
+  Lock cachedFreeLocks;
+
+  /** The number of locks in {@link #cachedFreeLocks} */
+  int numCachedFreeLocks;
+
+  /**
+   * How long this thread spins on a contended thin lock before yielding.
+   * Adapted by {@link ThinLock} to the hold times it observes.
+   */
+  int thinLockSpinLimit = Lock.INITIAL_SPIN_LIMIT;
+
+  /**
+   * When this thread started to contend for the lock it is acquiring,
+   * from {@link org.jikesrvm.runtime.Time#nanoTime}, or zero if it has
+   * not had to contend.  Used by {@link LockProfiler}.
+   */
+  long lockContendedSince;
 
   /*
    * Wait/notify fields
@@ -676,6 +692,11 @@ public final class RVMThread extends ThreadContext {
    */
   boolean isBlockedForGC;
 
+  /**
+   * When did the thread last acknowledge a block request for GC?
+   */
+  long gcBlockAcknowledgedTime;
+
   /**
    * A block adapter specifies the reason for blocking or unblocking a thread.  A thread
    * remains blocked so long as any of the block adapters say that it should be blocked.
@@ -795,6 +816,9 @@ public final class RVMThread extends ThreadContext {
 
     void setBlocked(RVMThread t, boolean value) {
       t.isBlockedForGC = value;
+      if (value) {
+        t.gcBlockAcknowledgedTime = Time.nanoTime();
+      }
     }
 
     int requestBlock(RVMThread t) {
@@ -1304,6 +1328,12 @@ public final class RVMThread extends ThreadContext {
     }
 
     FinalizerThread.boot();
+    if (MemoryManager.backgroundSweep()) {
+      SweeperThread.boot();
+    }
+    if (MemoryManager.preZero()) {
+      ZeroingThread.boot();
+    }
     getCurrentThread().enableYieldpoints();
     if (traceAcct) VM.sysWriteln("RVMThread booted");
   }
@@ -2062,6 +2092,51 @@ public final class RVMThread extends ThreadContext {
     return result;
   }
 
+  /**
+   * Wait for this thread to acknowledge a block request that has already been
+   * made with {@link #asyncBlock(BlockAdapter)}.  Unlike {@link #block(BlockAdapter)}
+   * the request is not made again, so a caller can raise the request on all
+   * threads first and then wait for each in turn, overlapping their
+   * safepoint latencies.
+   * <p>
+   * As in {@link #block(BlockAdapter, boolean)}, only a thread that is
+   * IN_JAVA_TO_BLOCK is waited for.  A thread that is BLOCKED_IN_NATIVE or
+   * BLOCKED_IN_JNI, for instance one waiting on a monitor, cannot return to
+   * Java without blocking, and may not return from native code for a long
+   * time, so waiting for it to acknowledge the request could hang.
+   *
+   * @param ba the block adapter of the outstanding request
+   * @return the execStatus of the thread once it is blocked, or TERMINATED
+   */
+  @Unpreemptible("Waits for the receiver to block")
+  int waitForBlock(BlockAdapter ba) {
+    if (VM.VerifyAssertions)
+      VM._assert(getCurrentThread() != this);
+    int result;
+    monitor().lockNoHandshake();
+    while (getExecStatus() == IN_JAVA_TO_BLOCK &&
+           ba.hasBlockRequest(this) && !ba.isBlocked(this) && !isAboutToTerminate) {
+      if (traceBlock)
+        VM.sysWriteln("Thread #", getCurrentThread().threadSlot,
+            " is calling wait until thread #", threadSlot, " blocks.");
+      if (VM.VerifyAssertions) {
+        // do a timed wait, and assert that the thread did not disappear
+        // into native in the meantime
+        monitor().timedWaitRelativeNoHandshake(1000L * 1000L * 1000L); // 1 sec
+        assertUnacceptableStates(IN_NATIVE);
+      } else {
+        monitor().waitNoHandshake();
+      }
+    }
+    if (isAboutToTerminate) {
+      result = TERMINATED;
+    } else {
+      result = getExecStatus();
+    }
+    monitor().unlock();
+    return result;
+  }
+
   public boolean blockedFor(BlockAdapter ba) {
     monitor().lockNoHandshake();
     boolean result = ba.isBlocked(this);
@@ -2315,6 +2390,7 @@ public final class RVMThread extends ThreadContext {
         VM.sysWriteln("=== Debug requested - attempting safe VM dump ===");
         dumpAcct();
         reportThreadTransitionCounts();
+        LockProfiler.report();
 
         // FIXME: this code runs concurrently to GC and has no way of stopping
         // it.  hence it is dangerous.  leaving it as-is for now, since it's
@@ -2719,19 +2795,18 @@ public final class RVMThread extends ThreadContext {
    */
   @Unpreemptible
   private void terminateUnpreemptible() {
-    // return cached free lock
+    // return cached free locks
     if (traceAcct)
-      VM.sysWriteln("returning cached lock...");
+      VM.sysWriteln("returning cached locks...");
 
-    if (cachedFreeLock != null) {
+    if (cachedFreeLocks != null) {
       if (Lock.trace) {
-        VM.sysWriteln("Thread #", threadSlot, ": about to free lock ",
-            Magic.objectAsAddress(cachedFreeLock));
+        VM.sysWriteln("Thread #", threadSlot, ": about to free locks from ",
+            Magic.objectAsAddress(cachedFreeLocks));
       }
-      if (VM.VerifyAssertions)
-        VM._assert(cachedFreeLock.mutex.latestContender != this);
-      Lock.returnLock(cachedFreeLock);
-      cachedFreeLock = null;
+      Lock.returnLocks(cachedFreeLocks);
+      cachedFreeLocks = null;
+      numCachedFreeLocks = 0;
     }
 
     if (traceAcct)
@@ -3414,6 +3489,10 @@ public final class RVMThread extends ThreadContext {
   @Unpreemptible
   public static void blockAllMutatorsForGC() {
     RVMThread.handshakeLock.lockNoHandshake();
+    long start = Time.nanoTime();
+    long latest = start;
+    int laggard = -1;
+    int stopped = 0;
     while (true) {
       // (1) Find all the threads that need to be blocked for GC
       RVMThread.acctLock.lockNoHandshake();
@@ -3447,15 +3526,25 @@ public final class RVMThread extends ThreadContext {
       //     terminating).
       if (numToHandshake == 0) break;
 
-      // (4) Request a block for GC from all other threads.
+      // (4) Every remaining thread has been asked to block in (2), so their
+      //     safepoint latencies overlap; wait for each that is still running
+      //     Java code to acknowledge.  Threads in native code are not
+      //     waited for: they block on their way back to Java.
       for (int i = 0; i < numToHandshake; i++) {
         if (false) VM.sysWriteln("Waiting for ", RVMThread.handshakeThreads[i].getThreadSlot(), " to block.");
         RVMThread t = RVMThread.handshakeThreads[i];
-        RVMThread.observeExecStatusAtSTW(t.block(RVMThread.gcBlockAdapter));
+        int status = t.waitForBlock(RVMThread.gcBlockAdapter);
+        RVMThread.observeExecStatusAtSTW(status);
+        if (status != TERMINATED && t.gcBlockAcknowledgedTime > latest) {
+          latest = t.gcBlockAcknowledgedTime;
+          laggard = t.threadSlot;
+        }
+        stopped++;
         RVMThread.handshakeThreads[i] = null; // help GC
       }
     }
     RVMThread.handshakeLock.unlock();
+    RVMThread.observeSafepoint(Time.nanoTime() - start, stopped, laggard, latest - start);
 
     // Deal with terminating threads to ensure that all threads are either dead to MMTk or stopped above.
     RVMThread.processAboutToTerminate();
@@ -5133,6 +5222,71 @@ public final class RVMThread extends ThreadContext {
     statusAtSTWHistogram[execStatus]++;
   }
 
+  ////////////////////////// Time-to-safepoint statistics //////////////////////////
+
+  /** Number of stop-the-world handshakes */
+  private static int safepointCount;
+  /** Total time taken to stop all mutators, in nanoseconds */
+  private static long totalTimeToSafepoint;
+  /** Longest time taken to stop all mutators, in nanoseconds */
+  private static long maxTimeToSafepoint;
+  /** Time taken by the most recent handshake, in nanoseconds */
+  private static long lastTimeToSafepoint;
+  /** Number of threads that had to be waited for in the most recent handshake */
+  private static int lastSafepointThreads;
+  /** Slot of the last thread to block in the most recent handshake, or -1 */
+  private static int lastSafepointLaggard = -1;
+  /** Time from the start of the most recent handshake until the laggard blocked */
+  private static long lastSafepointLaggardTime;
+
+  /**
+   * Record the outcome of a stop-the-world handshake.
+   *
+   * @param time the time taken to stop all mutators, in nanoseconds
+   * @param threads the number of threads waited for
+   * @param laggard the slot of the last thread to block, or -1 if none
+   * @param laggardTime the time at which the laggard blocked, relative to the
+   *   start of the handshake
+   */
+  @Uninterruptible
+  private static void observeSafepoint(long time, int threads, int laggard, long laggardTime) {
+    safepointCount++;
+    totalTimeToSafepoint += time;
+    if (time > maxTimeToSafepoint) maxTimeToSafepoint = time;
+    lastTimeToSafepoint = time;
+    lastSafepointThreads = threads;
+    lastSafepointLaggard = laggard;
+    lastSafepointLaggardTime = laggardTime;
+  }
+
+  /**
+   * Report the time taken by the most recent stop-the-world handshake and
+   * the thread that was last to block.
+   */
+  @Uninterruptible
+  public static void reportLastSafepoint() {
+    VM.sysWrite("[Safepoint: ", lastTimeToSafepoint / 1000);
+    VM.sysWrite(" us, threads ", lastSafepointThreads);
+    if (lastSafepointLaggard >= 0) {
+      VM.sysWrite(", last #", lastSafepointLaggard);
+      VM.sysWrite(" after ", lastSafepointLaggardTime / 1000);
+      VM.sysWrite(" us");
+    }
+    VM.sysWriteln("]");
+  }
+
+  /**
+   * Report the time-to-safepoint statistics accumulated over the run.
+   */
+  @Uninterruptible
+  public static void reportSafepointStats() {
+    if (safepointCount == 0) return;
+    VM.sysWrite("Time to safepoint: handshakes ", safepointCount);
+    VM.sysWrite(", mean ", totalTimeToSafepoint / safepointCount / 1000);
+    VM.sysWrite(" us, max ", maxTimeToSafepoint / 1000);
+    VM.sysWriteln(" us");
+  }
+
   // FIXME: add histograms for states returned from various calls to block()
   // currently we just do it for the block() call in GC STW.
 
@@ -0,0 +1,83 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.NonMoving;
+
+/**
+ * Background sweeper thread.
+ *
+ * Created by RVMThread.boot() at runtime startup if the
+ * <code>backgroundSweep</code> GC option is set.  Its "run" method does
+ * the following:
+ *    1. wait until scheduled by g.c.
+ *    2. sweep the blocks the collection left unswept, one at a time,
+ *       until none are left
+ *    3. Go to 1
+ *
+ * Mutators allocating into a free-list space take the blocks this
+ * thread has swept, and sweep on demand when it has not kept up.
+ */
+@NonMoving
+public final class SweeperThread extends SystemThread {
+
+  private static final int verbose = 0;
+
+  private static boolean shouldRun;
+  private static Monitor schedLock;
+
+  public static void boot() {
+    schedLock = new Monitor();
+    new SweeperThread().start();
+  }
+
+  @Uninterruptible
+  public static void schedule() {
+    if (schedLock == null) return; // not booted yet: allocation sweeps on demand
+    schedLock.lockNoHandshake();
+    shouldRun = true;
+    schedLock.broadcast();
+    schedLock.unlock();
+  }
+
+  private SweeperThread() {
+    super("SweeperThread");
+  }
+
+  /** Run the sweeper thread */
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        schedLock.lockNoHandshake();
+        if (!shouldRun) {
+          schedLock.waitWithHandshake();
+        }
+        shouldRun = false;
+        schedLock.unlock();
+
+        int swept = 0;
+        while (MemoryManager.sweepInBackground()) {
+          swept++;
+        }
+        if (verbose >= 1) VM.sysWriteln("SweeperThread swept ", swept, " blocks");
+      }
+    } catch (Throwable e) {
+      VM.sysWriteln("Unexpected exception thrown in sweeper thread: ", e.toString());
+      e.printStackTrace();
+    }
+  }
+}
@@ -81,7 +81,28 @@ public final class ThinLock implements ThinLockConstants {
   @Unpreemptible
   public static void lock(Object o, Offset lockOffset) {
     if (STATS) fastLocks++;
+    int attempts = acquire(o, lockOffset);
+    if (LockProfiler.enabled) {
+      RVMThread me = RVMThread.getCurrentThread();
+      long start = me.lockContendedSince;
+      if (start != 0) {
+        me.lockContendedSince = 0;
+        LockProfiler.contended(start, attempts < 0);
+      }
+    }
+  }
 
+  /**
+   * The body of {@link #lock(Object, Offset)}.
+   *
+   * @param o the object to be locked
+   * @param lockOffset the offset of the thin lock word in the object
+   * @return the number of failed attempts to take the lock, negated and
+   * less one if the lock was taken by inflating it
+   */
+  @NoNullCheck
+  @Unpreemptible
+  private static int acquire(Object o, Offset lockOffset) {
     Word threadId = Word.fromIntZeroExtend(RVMThread.getCurrentThread().getLockingId());
 
     for (int cnt=0;;cnt++) {
@@ -98,7 +119,7 @@ public final class ThinLock implements ThinLockConstants {
                   old,
                   old.or(threadId).plus(TL_LOCK_COUNT_UNIT))) {
               Magic.isync();
-              return;
+              return cnt;
             }
           } else {
             // lock is unbiased but biasing is NOT allowed, so turn it into
@@ -108,7 +129,7 @@ public final class ThinLock implements ThinLockConstants {
                   old,
                   old.or(threadId).or(TL_STAT_THIN))) {
               Magic.isync();
-              return;
+              return cnt;
             }
           }
         } else if (id.EQ(threadId)) {
@@ -116,11 +137,12 @@ public final class ThinLock implements ThinLockConstants {
           Word changed = old.plus(TL_LOCK_COUNT_UNIT);
           if (!changed.and(TL_LOCK_COUNT_MASK).isZero()) {
             setDedicatedU16(o, lockOffset, changed);
-            return;
+            return cnt;
           } else {
             tryToInflate=true;
           }
         } else {
+          if (LockProfiler.enabled) LockProfiler.contending();
           if (casFromBiased(o, lockOffset, old, biasBitsToThinBits(old), cnt)) {
             continue; // don't spin, since it's thin now
           }
@@ -131,7 +153,7 @@ public final class ThinLock implements ThinLockConstants {
           if (Synchronization.tryCompareAndSwap(
                 o, lockOffset, old, old.or(threadId))) {
             Magic.isync();
-            return;
+            return cnt;
           }
         } else if (id.EQ(threadId)) {
           Word changed = old.plus(TL_LOCK_COUNT_UNIT);
@@ -140,19 +162,25 @@ public final class ThinLock implements ThinLockConstants {
           } else if (Synchronization.tryCompareAndSwap(
                        o, lockOffset, old, changed)) {
             Magic.isync();
-            return;
+            return cnt;
           }
         } else if (cnt>retryLimit) {
           tryToInflate=true;
+        } else {
+          if (LockProfiler.enabled) LockProfiler.contending();
+          if (spinWhileHeld(o, lockOffset, old)) {
+            continue; // the lock word changed while we spun, so retry without yielding
+          }
         }
       } else {
         if (VM.VerifyAssertions) VM._assert(stat.EQ(TL_STAT_FAT));
         // lock is fat.  contend on it.
         if (Lock.getLock(getLockIndex(old)).lockHeavy(o)) {
-          return;
+          return cnt;
         }
       }
 
+      if (LockProfiler.enabled) LockProfiler.contending();
       if (tryToInflate) {
         if (STATS) slowLocks++;
         // the lock is not fat, is owned by someone else, or else the count wrapped.
@@ -162,7 +190,7 @@ public final class ThinLock implements ThinLockConstants {
         // NB: this calls into our attemptToMarkInflated() method, which will do the
         // Right Thing if the lock is biased to someone else.
         if (inflateAndLock(o, lockOffset)) {
-          return;
+          return -1 - cnt;
         }
       } else {
         RVMThread.yieldNoHandshake();
@@ -170,6 +198,35 @@ public final class ThinLock implements ThinLockConstants {
     }
   }
 
+  /**
+   * Spin until a thin lock held by another thread changes, or until the
+   * current thread's spin limit is reached.  Thin locks have no room for
+   * the statistics that adapt the spin limit of a heavy-weight lock, so
+   * each thread adapts its own limit across the thin locks it contends
+   * for.
+   *
+   * @param o the object being locked
+   * @param lockOffset the offset of the thin lock word in the object
+   * @param old the lock word seen to be held
+   * @return whether the lock word changed
+   */
+  @NoInline
+  @NoNullCheck
+  @Unpreemptible
+  private static boolean spinWhileHeld(Object o, Offset lockOffset, Word old) {
+    RVMThread me = RVMThread.getCurrentThread();
+    int limit = me.thinLockSpinLimit;
+    int spins = 0;
+    boolean changed = false;
+    while (spins < limit && !changed) {
+      Magic.pause();
+      spins++;
+      changed = Magic.getWordAtOffset(o, lockOffset).NE(old);
+    }
+    me.thinLockSpinLimit = Lock.adaptSpinLimit(limit, spins, changed);
+    return changed;
+  }
+
   @NoInline
   @NoNullCheck
   @Unpreemptible
@@ -447,6 +504,7 @@ public final class ThinLock implements ThinLockConstants {
       if (VM.VerifyAssertions) VM._assert(l!=null);
       if (attemptToMarkInflated(
             o, lockOffset, bits, l.index, cnt)) {
+        if (LockProfiler.enabled) LockProfiler.inflated();
         l.setLockedObject(o);
         l.setOwnerId(getLockOwner(bits));
         if (l.getOwnerId() != 0) {
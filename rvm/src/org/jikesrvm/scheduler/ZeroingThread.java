@@ -0,0 +1,84 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+package org.jikesrvm.scheduler;
+
+import org.jikesrvm.VM;
+import org.jikesrvm.mm.mminterface.MemoryManager;
+import org.vmmagic.pragma.Uninterruptible;
+import org.vmmagic.pragma.NonMoving;
+
+/**
+ * Background zeroing thread.
+ *
+ * Created by RVMThread.boot() at runtime startup if the
+ * <code>preZero</code> GC option is set.  Its "run" method does
+ * the following:
+ *    1. wait until scheduled by g.c.
+ *    2. zero the pages the collection released from copying spaces,
+ *       a few at a time and ahead of the allocation cursor, until the
+ *       cursor or the old high water mark is reached
+ *    3. Go to 1
+ *
+ * Mutators allocating into a copying space skip zeroing the pages this
+ * thread has already zeroed.
+ */
+@NonMoving
+public final class ZeroingThread extends SystemThread {
+
+  private static final int verbose = 0;
+
+  private static boolean shouldRun;
+  private static Monitor schedLock;
+
+  public static void boot() {
+    schedLock = new Monitor();
+    new ZeroingThread().start();
+  }
+
+  @Uninterruptible
+  public static void schedule() {
+    if (schedLock == null) return; // not booted yet: allocation zeroes its own pages
+    schedLock.lockNoHandshake();
+    shouldRun = true;
+    schedLock.broadcast();
+    schedLock.unlock();
+  }
+
+  private ZeroingThread() {
+    super("ZeroingThread");
+  }
+
+  /** Run the zeroing thread */
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        schedLock.lockNoHandshake();
+        if (!shouldRun) {
+          schedLock.waitWithHandshake();
+        }
+        shouldRun = false;
+        schedLock.unlock();
+
+        int steps = 0;
+        while (MemoryManager.zeroInBackground()) {
+          steps++;
+        }
+        if (verbose >= 1) VM.sysWriteln("ZeroingThread zeroed ", steps, " steps");
+      }
+    } catch (Throwable e) {
+      VM.sysWriteln("Unexpected exception thrown in zeroing thread: ", e.toString());
+      e.printStackTrace();
+    }
+  }
+}
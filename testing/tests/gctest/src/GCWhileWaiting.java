@@ -0,0 +1,87 @@
+/*
+ *  This file is part of the Jikes RVM project (http://jikesrvm.org).
+ *
+ *  This file is licensed to You under the Eclipse Public License (EPL);
+ *  You may not use this file except in compliance with the License. You
+ *  may obtain a copy of the License at
+ *
+ *      http://www.opensource.org/licenses/eclipse-1.0.php
+ *
+ *  See the COPYRIGHT.txt file distributed with this work for information
+ *  regarding copyright ownership.
+ */
+
+/**
+ * Collect while other threads are parked in <code>Object.wait()</code> and
+ * <code>Thread.sleep()</code>.  Such threads are in native code when the
+ * world is stopped, and stopping the world must not wait for them.
+ */
+class GCWhileWaiting {
+
+  static final int WAITERS = 4;
+  static final int COLLECTIONS = 10;
+
+  static final Object lock = new Object();
+  static boolean done = false;
+  static int parked = 0;
+  public static Object junk;
+
+  public static void main(String[] args) throws Throwable {
+    Thread[] threads = new Thread[WAITERS + 1];
+    for (int i = 0; i < WAITERS; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          synchronized (lock) {
+            parked++;
+            lock.notifyAll();
+            while (!done) {
+              try {
+                lock.wait();
+              } catch (InterruptedException e) {
+              }
+            }
+          }
+        }
+      };
+    }
+    threads[WAITERS] = new Thread() {
+      public void run() {
+        synchronized (lock) {
+          parked++;
+          lock.notifyAll();
+        }
+        try {
+          Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    for (Thread t : threads) {
+      t.start();
+    }
+    synchronized (lock) {
+      while (parked < threads.length) {
+        lock.wait();
+      }
+    }
+    Thread.sleep(100);
+
+    for (int i = 0; i < COLLECTIONS; i++) {
+      for (int j = 0; j < 1000; j++) {
+        junk = new int[100];
+      }
+      System.gc();
+      System.out.println("Collection " + (i + 1) + " completed");
+    }
+
+    synchronized (lock) {
+      done = true;
+      lock.notifyAll();
+    }
+    threads[WAITERS].interrupt();
+    for (Thread t : threads) {
+      t.join();
+    }
+    System.out.println("Overall: SUCCESS");
+  }
+}